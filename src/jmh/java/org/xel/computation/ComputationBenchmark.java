@@ -0,0 +1,158 @@
+package org.xel.computation;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xel.Appendix;
+import org.xel.PowAndBounty;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the submission pipeline that need no node database. ExecutionEngine.compute runs against a stub
+ * miner (src/jmh/scripts/xel_miner_stub.sh, override with -Dbench.miner=...) so that the process round trip is
+ * measured and not the ElasticPL program.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ComputationBenchmark {
+
+    private static final long WORK_ID = 1234567890123L;
+    private static final long BLOCK_ID = -987654321098L;
+
+    private byte[] publicKey;
+    private byte[] multiplier;
+    private byte[] target;
+    private String epl;
+    private int[] storage;
+    private long[] powTargets;
+    private int powTargetIndex;
+
+    private CommandNewWork newWork;
+    private CommandPowBty pow;
+    private Appendix.Message[] newWorkMessages;
+    private Appendix.Message[] powMessages;
+    private byte[] powBytes;
+
+    @Setup
+    public void setup() throws Exception {
+        Random random = new Random(42);
+        publicKey = new byte[32];
+        random.nextBytes(publicKey);
+        multiplier = new byte[ComputationConstants.MULTIPLIER_LENGTH];
+        random.nextBytes(multiplier);
+        byte[] hash = new byte[ComputationConstants.MD5LEN];
+        random.nextBytes(hash);
+        target = ExecutionEngine.getMaximumTargetForTesting();
+
+        epl = ExecutionEngine.getEplCode(System.getProperty("bench.epl", "src/test/testfiles/op2.epl"));
+        storage = new int[16];
+        for (int i = 0; i < storage.length; ++i)
+            storage[i] = random.nextInt();
+
+        powTargets = new long[1024];
+        for (int i = 0; i < powTargets.length; ++i)
+            powTargets[i] = (random.nextLong() >>> 1) % (Long.MAX_VALUE / 10000) + 1;
+
+        newWork = new CommandNewWork(100, (short) 250, 1000000L, 10000000L, 10, 3, epl);
+        pow = new CommandPowBty(WORK_ID, true, multiplier, hash, new byte[0], 0, 0, publicKey);
+        newWorkMessages = MessageEncoder.encodeAttachment(newWork);
+        powMessages = MessageEncoder.encodeAttachment(pow);
+        powBytes = pow.getByteArray();
+
+        String miner = System.getProperty("bench.miner", "src/jmh/scripts/xel_miner_stub.sh");
+        ExecutionEngine.setVerifier(new ProcessVerifier(new File("work"), "sh " + new File(miner).getAbsolutePath()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        ExecutionEngine.shutdown();
+    }
+
+    @Benchmark
+    public Appendix.Message[] encodeNewWork() {
+        return MessageEncoder.encodeAttachment(newWork);
+    }
+
+    @Benchmark
+    public IComputationAttachment decodeNewWork() {
+        return MessageEncoder.decodeAttachment(newWorkMessages);
+    }
+
+    @Benchmark
+    public Appendix.Message[] encodePowBty() {
+        return MessageEncoder.encodeAttachment(pow);
+    }
+
+    @Benchmark
+    public IComputationAttachment decodePowBty() {
+        return MessageEncoder.decodeAttachment(powMessages);
+    }
+
+    @Benchmark
+    public CommandPowBty parsePowBty() {
+        ByteBuffer buffer = ByteBuffer.wrap(powBytes);
+        buffer.get(); // message identifier
+        return new CommandPowBty(buffer);
+    }
+
+    @Benchmark
+    public int[] personalizedIntStream() throws Exception {
+        return PowAndBounty.personalizedIntStream(publicKey, BLOCK_ID, multiplier, WORK_ID);
+    }
+
+    @Benchmark
+    public BigInteger scalerCached() {
+        return Scaler.get(powTargets[0]);
+    }
+
+    @Benchmark
+    public BigInteger scalerSpread() {
+        // walks more targets than the cache holds
+        powTargetIndex = (powTargetIndex + 1) & (powTargets.length - 1);
+        return Scaler.get(powTargets[powTargetIndex]);
+    }
+
+    @Benchmark
+    public BigInteger scalerCompute() {
+        return Scaler.compute(powTargets[0]);
+    }
+
+    @Benchmark
+    public ComputationResult executionEngineCompute() throws Exception {
+        return new ExecutionEngine().compute(target, publicKey, BLOCK_ID, multiplier, WORK_ID, epl, storage, false);
+    }
+}
@@ -0,0 +1,106 @@
+package org.xel.computation;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xel.Nxt;
+import org.xel.Transaction;
+import org.xel.Work;
+import org.xel.db.DbIterator;
+
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Benchmarks that read the work tables, so they need a synced node database (as configured in conf/nxt.properties)
+ * with at least one active work. Light mode validation runs against the stub miner, see ComputationBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkBenchmark {
+
+    private Work work;
+    private Transaction transaction;
+    private byte[] publicKey;
+    private byte[] hash;
+    private Random random;
+
+    @Setup
+    public void setup() {
+        Nxt.init();
+        try (DbIterator<Work> it = Work.getActiveWork()) {
+            while (it.hasNext()) {
+                Work w = it.next();
+                if (work == null || w.getStorage_size() > work.getStorage_size())
+                    work = w;
+            }
+        }
+        if (work == null)
+            throw new IllegalStateException("No active work in the node database, WorkBenchmark needs a synced node");
+
+        String miner = System.getProperty("bench.miner", "src/jmh/scripts/xel_miner_stub.sh");
+        ExecutionEngine.setVerifier(new ProcessVerifier(new File("work"), "sh " + new File(miner).getAbsolutePath()));
+
+        random = new Random(42);
+        publicKey = new byte[32];
+        random.nextBytes(publicKey);
+        hash = new byte[ComputationConstants.MD5LEN];
+        transaction = mock(Transaction.class);
+        when(transaction.getDeadline()).thenReturn((short) 1);
+        when(transaction.getSenderPublicKey()).thenReturn(publicKey);
+        when(transaction.getSenderPublicKeyComputational()).thenReturn(publicKey);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Nxt.shutdown();
+    }
+
+    @Benchmark
+    public int[] getStorage() {
+        return work.getStorage(0);
+    }
+
+    @Benchmark
+    public boolean validateLightMode() {
+        // a fresh multiplier each time, light mode never short-cuts on an earlier result anyway
+        byte[] multiplier = new byte[ComputationConstants.MULTIPLIER_LENGTH];
+        random.nextBytes(multiplier);
+        CommandPowBty pow = new CommandPowBty(work.getId(), true, multiplier, hash, new byte[0],
+                work.getStorage_size() > 0 ? 0 : -1, work.getCurrentRound(), publicKey);
+        return pow.validate(transaction, true);
+    }
+}
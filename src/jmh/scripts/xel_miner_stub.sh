@@ -0,0 +1,12 @@
+#!/bin/sh
+# Stands in for xel_miner in the benchmarks: ignores the verifier's command line, consumes the storage sent on
+# stdin and answers with the DEBUG lines ProcessVerifier parses, without running any ElasticPL.
+# Set XEL_STUB_POW=true to report every input as a valid POW. Lines carry a timestamp like the miner's logger.
+
+cat > /dev/null
+
+echo "[$(date +%H:%M:%S)] DEBUG: POW Found: ${XEL_STUB_POW:-false}"
+echo "[$(date +%H:%M:%S)] DEBUG: Bounty Found: false"
+echo "[$(date +%H:%M:%S)] DEBUG: storage size: 0"
+echo "[$(date +%H:%M:%S)] DEBUG: POW Hash: 00000000000000000000000000000000"
+exit 0
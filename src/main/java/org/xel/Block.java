@@ -83,6 +83,12 @@ public interface Block {
 
     JSONObject getJSONObject();
     JSONObject getJSONObjectComputational();
+    // header and transactions as raw bytes, only for the binary peer protocol
+    JSONObject getBinaryJSONObject();
+    JSONObject getBinaryJSONObjectComputational();
+    // header and block id, the compact relay adds short transaction ids
+    JSONObject getCompactJSONObject();
+    JSONObject getCompactJSONObjectComputational();
     long getPreviousBlockPowTarget();
 
     byte[] getBlockHash();
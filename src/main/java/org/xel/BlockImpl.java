@@ -352,20 +352,7 @@ final class BlockImpl implements Block {
 
     @Override
     public JSONObject getJSONObject() {
-        JSONObject json = new JSONObject();
-        json.put("version", version);
-        json.put("timestamp", timestamp);
-        json.put("previousBlock", Long.toUnsignedString(previousBlockId));
-        json.put("totalAmountNQT", totalAmountNQT);
-        json.put("totalFeeNQT", totalFeeNQT);
-        json.put("payloadLength", payloadLength);
-        json.put("payloadHash", Convert.toHexString(payloadHash));
-        json.put("generatorPublicKey", Convert.toHexString(getGeneratorPublicKey()));
-        json.put("generationSignature", Convert.toHexString(generationSignature));
-        if (version > 1) {
-            json.put("previousBlockHash", Convert.toHexString(previousBlockHash));
-        }
-        json.put("blockSignature", Convert.toHexString(blockSignature));
+        JSONObject json = getHeaderJSONObject(getGeneratorPublicKey());
         JSONArray transactionsData = new JSONArray();
         getTransactions().forEach(transaction -> transactionsData.add(transaction.getJSONObject()));
         json.put("transactions", transactionsData);
@@ -374,6 +361,29 @@ final class BlockImpl implements Block {
 
     @Override
     public JSONObject getJSONObjectComputational() {
+        JSONObject json = getHeaderJSONObject(getGeneratorPubkeyComputational());
+        JSONArray transactionsData = new JSONArray();
+        getTransactions().forEach(transaction -> transactionsData.add(transaction.getJSONObjectComputational()));
+        json.put("transactions", transactionsData);
+        return json;
+    }
+
+    @Override
+    public JSONObject getCompactJSONObject() {
+        return getCompactJSONObject(getHeaderJSONObject(getGeneratorPublicKey()));
+    }
+
+    @Override
+    public JSONObject getCompactJSONObjectComputational() {
+        return getCompactJSONObject(getHeaderJSONObject(getGeneratorPubkeyComputational()));
+    }
+
+    private JSONObject getCompactJSONObject(JSONObject json) {
+        json.put("block", getStringId());
+        return json;
+    }
+
+    private JSONObject getHeaderJSONObject(byte[] generatorPublicKey) {
         JSONObject json = new JSONObject();
         json.put("version", version);
         json.put("timestamp", timestamp);
@@ -382,14 +392,41 @@ final class BlockImpl implements Block {
         json.put("totalFeeNQT", totalFeeNQT);
         json.put("payloadLength", payloadLength);
         json.put("payloadHash", Convert.toHexString(payloadHash));
-        json.put("generatorPublicKey", Convert.toHexString(getGeneratorPubkeyComputational()));
+        json.put("generatorPublicKey", Convert.toHexString(generatorPublicKey));
         json.put("generationSignature", Convert.toHexString(generationSignature));
         if (version > 1) {
             json.put("previousBlockHash", Convert.toHexString(previousBlockHash));
         }
         json.put("blockSignature", Convert.toHexString(blockSignature));
+        return json;
+    }
+
+    @Override
+    public JSONObject getBinaryJSONObject() {
+        if (version < 3) {
+            return getJSONObject();
+        }
+        return getBinaryJSONObject(false);
+    }
+
+    @Override
+    public JSONObject getBinaryJSONObjectComputational() {
+        if (version < 3) {
+            return getJSONObjectComputational();
+        }
+        getGeneratorPubkeyComputational(); // the header bytes need the generator key of the computation chain
+        return getBinaryJSONObject(true);
+    }
+
+    private JSONObject getBinaryJSONObject(boolean computational) {
+        JSONObject json = new JSONObject();
+        // ProcessBlock looks at these before parsing the block
+        json.put("previousBlock", Long.toUnsignedString(previousBlockId));
+        json.put("timestamp", timestamp);
+        json.put("blockBytes", getBytes());
         JSONArray transactionsData = new JSONArray();
-        getTransactions().forEach(transaction -> transactionsData.add(transaction.getJSONObjectComputational()));
+        getTransactions().forEach(transaction -> transactionsData.add(computational
+                ? transaction.getBinaryJSONObjectComputational() : transaction.getBinaryJSONObject()));
         json.put("transactions", transactionsData);
         return json;
     }
@@ -412,23 +449,29 @@ final class BlockImpl implements Block {
 
     static BlockImpl parseBlock(JSONObject blockData) throws NxtException.NotValidException {
         try {
-            int version = ((Long) blockData.get("version")).intValue();
-            int timestamp = ((Long) blockData.get("timestamp")).intValue();
-            long previousBlock = Convert.parseUnsignedLong((String) blockData.get("previousBlock"));
-            long totalAmountNQT = Convert.parseLong(blockData.get("totalAmountNQT"));
-            long totalFeeNQT = Convert.parseLong(blockData.get("totalFeeNQT"));
-            int payloadLength = ((Long) blockData.get("payloadLength")).intValue();
-            byte[] payloadHash = Convert.parseHexString((String) blockData.get("payloadHash"));
-            byte[] generatorPublicKey = Convert.parseHexString((String) blockData.get("generatorPublicKey"));
-            byte[] generationSignature = Convert.parseHexString((String) blockData.get("generationSignature"));
-            byte[] blockSignature = Convert.parseHexString((String) blockData.get("blockSignature"));
-            byte[] previousBlockHash = version == 1 ? null : Convert.parseHexString((String) blockData.get("previousBlockHash"));
             List<TransactionImpl> blockTransactions = new ArrayList<>();
             for (Object transactionData : (JSONArray) blockData.get("transactions")) {
                 blockTransactions.add(TransactionImpl.parseTransaction((JSONObject) transactionData));
             }
-            BlockImpl block = new BlockImpl(version, timestamp, previousBlock, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash, generatorPublicKey,
-                    generationSignature, blockSignature, previousBlockHash, blockTransactions);
+            BlockImpl block;
+            Object blockBytes = blockData.get("blockBytes");
+            if (blockBytes instanceof byte[]) {
+                block = parseBlockBytes((byte[]) blockBytes, blockTransactions);
+            } else {
+                int version = ((Long) blockData.get("version")).intValue();
+                int timestamp = ((Long) blockData.get("timestamp")).intValue();
+                long previousBlock = Convert.parseUnsignedLong((String) blockData.get("previousBlock"));
+                long totalAmountNQT = Convert.parseLong(blockData.get("totalAmountNQT"));
+                long totalFeeNQT = Convert.parseLong(blockData.get("totalFeeNQT"));
+                int payloadLength = ((Long) blockData.get("payloadLength")).intValue();
+                byte[] payloadHash = Convert.parseHexString((String) blockData.get("payloadHash"));
+                byte[] generatorPublicKey = Convert.parseHexString((String) blockData.get("generatorPublicKey"));
+                byte[] generationSignature = Convert.parseHexString((String) blockData.get("generationSignature"));
+                byte[] blockSignature = Convert.parseHexString((String) blockData.get("blockSignature"));
+                byte[] previousBlockHash = version == 1 ? null : Convert.parseHexString((String) blockData.get("previousBlockHash"));
+                block = new BlockImpl(version, timestamp, previousBlock, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash, generatorPublicKey,
+                        generationSignature, blockSignature, previousBlockHash, blockTransactions);
+            }
             if (!block.checkSignature()) {
                 throw new NxtException.NotValidException("Invalid block signature");
             }
@@ -441,23 +484,29 @@ final class BlockImpl implements Block {
 
     static BlockImpl parseBlockComputation(JSONObject blockData) throws NxtException.NotValidException {
         try {
-            int version = ((Long) blockData.get("version")).intValue();
-            int timestamp = ((Long) blockData.get("timestamp")).intValue();
-            long previousBlock = Convert.parseUnsignedLong((String) blockData.get("previousBlock"));
-            long totalAmountNQT = Convert.parseLong(blockData.get("totalAmountNQT"));
-            long totalFeeNQT = Convert.parseLong(blockData.get("totalFeeNQT"));
-            int payloadLength = ((Long) blockData.get("payloadLength")).intValue();
-            byte[] payloadHash = Convert.parseHexString((String) blockData.get("payloadHash"));
-            byte[] generatorPublicKey = Convert.parseHexString((String) blockData.get("generatorPublicKey"));
-            byte[] generationSignature = Convert.parseHexString((String) blockData.get("generationSignature"));
-            byte[] blockSignature = Convert.parseHexString((String) blockData.get("blockSignature"));
-            byte[] previousBlockHash = version == 1 ? null : Convert.parseHexString((String) blockData.get("previousBlockHash"));
             List<TransactionImpl> blockTransactions = new ArrayList<>();
             for (Object transactionData : (JSONArray) blockData.get("transactions")) {
                 blockTransactions.add(TransactionImpl.parseTransactionComputation((JSONObject) transactionData));
             }
-            BlockImpl block = new BlockImpl(version, timestamp, previousBlock, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash, generatorPublicKey,
-                    generationSignature, blockSignature, previousBlockHash, blockTransactions);
+            BlockImpl block;
+            Object blockBytes = blockData.get("blockBytes");
+            if (blockBytes instanceof byte[]) {
+                block = parseBlockBytes((byte[]) blockBytes, blockTransactions);
+            } else {
+                int version = ((Long) blockData.get("version")).intValue();
+                int timestamp = ((Long) blockData.get("timestamp")).intValue();
+                long previousBlock = Convert.parseUnsignedLong((String) blockData.get("previousBlock"));
+                long totalAmountNQT = Convert.parseLong(blockData.get("totalAmountNQT"));
+                long totalFeeNQT = Convert.parseLong(blockData.get("totalFeeNQT"));
+                int payloadLength = ((Long) blockData.get("payloadLength")).intValue();
+                byte[] payloadHash = Convert.parseHexString((String) blockData.get("payloadHash"));
+                byte[] generatorPublicKey = Convert.parseHexString((String) blockData.get("generatorPublicKey"));
+                byte[] generationSignature = Convert.parseHexString((String) blockData.get("generationSignature"));
+                byte[] blockSignature = Convert.parseHexString((String) blockData.get("blockSignature"));
+                byte[] previousBlockHash = version == 1 ? null : Convert.parseHexString((String) blockData.get("previousBlockHash"));
+                block = new BlockImpl(version, timestamp, previousBlock, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash, generatorPublicKey,
+                        generationSignature, blockSignature, previousBlockHash, blockTransactions);
+            }
 
             block.getGeneratorPubkeyComputational(); // make sure pubkey is fresh
 
@@ -471,6 +520,41 @@ final class BlockImpl implements Block {
         }
     }
 
+    // the block header as written by bytes(), with the transactions that were sent alongside
+    private static BlockImpl parseBlockBytes(byte[] bytes, List<TransactionImpl> blockTransactions) throws NxtException.NotValidException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        int version = buffer.getInt();
+        if (version < 3) {
+            throw new NxtException.NotValidException("Block version " + version + " has no binary encoding");
+        }
+        int timestamp = buffer.getInt();
+        long previousBlock = buffer.getLong();
+        int numberOfTransactions = buffer.getInt();
+        if (numberOfTransactions != blockTransactions.size()) {
+            throw new NxtException.NotValidException("Block has " + numberOfTransactions + " transactions, but "
+                    + blockTransactions.size() + " were sent");
+        }
+        long totalAmountNQT = buffer.getLong();
+        long totalFeeNQT = buffer.getLong();
+        int payloadLength = buffer.getInt();
+        byte[] payloadHash = new byte[32];
+        buffer.get(payloadHash);
+        byte[] generatorPublicKey = new byte[32];
+        buffer.get(generatorPublicKey);
+        byte[] generationSignature = new byte[32];
+        buffer.get(generationSignature);
+        byte[] previousBlockHash = new byte[32];
+        buffer.get(previousBlockHash);
+        byte[] blockSignature = new byte[64];
+        buffer.get(blockSignature);
+        if (buffer.hasRemaining()) {
+            throw new NxtException.NotValidException("Block bytes too long, " + buffer.remaining() + " extra bytes");
+        }
+        return new BlockImpl(version, timestamp, previousBlock, totalAmountNQT, totalFeeNQT, payloadLength, payloadHash, generatorPublicKey,
+                generationSignature, blockSignature, previousBlockHash, blockTransactions);
+    }
+
     @Override
     public byte[] getBytes() {
         return Arrays.copyOf(bytes(), bytes.length);
@@ -519,6 +603,16 @@ final class BlockImpl implements Block {
 
     private volatile boolean hasValidSignature = false;
 
+    void preverifySignature() {
+        if (!hasValidSignature && generatorPublicKey != null) {
+            try {
+                checkSignature();
+            } catch (RuntimeException e) {
+                hasValidSignature = false;
+            }
+        }
+    }
+
     private boolean checkSignature() {
         if (!hasValidSignature) {
             byte[] data = Arrays.copyOf(bytes(), bytes.length - 64);
@@ -0,0 +1,137 @@
+package org.xel;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.xel.db.TransactionalDb;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recently applied computation chain transactions that carry a message, by id. Work creation chains reference their
+ * earlier chunks by full hash, this lets them be reassembled without going to the database once the chunks have
+ * left the block cache. Transactions are added when their block is applied and only become visible to other threads
+ * once that block is committed, popped off blocks are removed again.
+ */
+final class ComputationTransactionIndex {
+
+    private static final int MAX_TRANSACTIONS = Math.max(0, Nxt.getIntProperty("nxt.computationTransactionIndexSize", 5000));
+
+    private static final Map<Long, TransactionImpl> transactions = new LinkedHashMap<Long, TransactionImpl>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, TransactionImpl> eldest) {
+            return size() > MAX_TRANSACTIONS;
+        }
+    };
+
+    // transactions of blocks applied in the current, not yet committed, database transaction
+    private static final ThreadLocal<Map<Long, TransactionImpl>> pending = new ThreadLocal<>();
+
+    private static final TransactionalDb.TransactionCallback transactionListener = new TransactionalDb.TransactionCallback() {
+        @Override
+        public void commit() {
+            Map<Long, TransactionImpl> applied = pending.get();
+            pending.remove();
+            if (applied != null) {
+                synchronized (transactions) {
+                    transactions.putAll(applied);
+                }
+            }
+        }
+
+        @Override
+        public void rollback() {
+            pending.remove();
+        }
+    };
+
+    static {
+        if (MAX_TRANSACTIONS > 0) {
+            BlockchainProcessor processor = Nxt.getTemporaryComputationBlockchainProcessor();
+            processor.addListener(ComputationTransactionIndex::onApply, BlockchainProcessor.Event.BEFORE_BLOCK_APPLY_COMPUTATION);
+            processor.addListener(ComputationTransactionIndex::onPop, BlockchainProcessor.Event.BLOCK_POPPED_COMPUTATION);
+            processor.addListener(block -> clear(), BlockchainProcessor.Event.RESCAN_BEGIN_COMPUTATION);
+        }
+    }
+
+    static void init() {}
+
+    static TransactionImpl get(long transactionId) {
+        Map<Long, TransactionImpl> applied = pending.get();
+        if (applied != null) {
+            TransactionImpl transaction = applied.get(transactionId);
+            if (transaction != null) {
+                return transaction;
+            }
+        }
+        synchronized (transactions) {
+            return transactions.get(transactionId);
+        }
+    }
+
+    static void clear() {
+        pending.remove();
+        synchronized (transactions) {
+            transactions.clear();
+        }
+    }
+
+    private static void onApply(Block block) {
+        List<TransactionImpl> chunks = new ArrayList<>();
+        for (Transaction transaction : block.getTransactions()) {
+            if (transaction.getMessage() != null) {
+                chunks.add((TransactionImpl) transaction);
+            }
+        }
+        if (chunks.isEmpty()) {
+            return;
+        }
+        if (!Db.db.isInTransaction()) {
+            synchronized (transactions) {
+                chunks.forEach(transaction -> transactions.put(transaction.getId(), transaction));
+            }
+            return;
+        }
+        Map<Long, TransactionImpl> applied = pending.get();
+        if (applied == null) {
+            applied = new LinkedHashMap<>();
+            pending.set(applied);
+        }
+        for (TransactionImpl transaction : chunks) {
+            applied.put(transaction.getId(), transaction);
+        }
+        Db.db.registerCallback(transactionListener);
+    }
+
+    private static void onPop(Block block) {
+        Map<Long, TransactionImpl> applied = pending.get();
+        synchronized (transactions) {
+            for (Transaction transaction : block.getTransactions()) {
+                transactions.remove(transaction.getId());
+                if (applied != null) {
+                    applied.remove(transaction.getId());
+                }
+            }
+        }
+    }
+
+    private ComputationTransactionIndex() {}
+
+}
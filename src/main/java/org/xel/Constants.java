@@ -32,6 +32,8 @@ public final class Constants {
         public static final int MAX_NUMBER_OF_TRANSACTIONS = 255;
         public static final int MIN_TRANSACTION_SIZE = 176;
         public static final int MAX_PAYLOAD_LENGTH = MAX_NUMBER_OF_TRANSACTIONS * MIN_TRANSACTION_SIZE;
+        public static final int MIN_TRANSACTION_SKETCH_CELLS = 48;
+        public static final int MAX_TRANSACTION_SKETCH_CELLS = 3072;
         public static final long MAX_BALANCE_NXT = 100000000;
         public static final long ONE_NXT  =  100000000;
         public static final long TENTH_NXT = 10000000;
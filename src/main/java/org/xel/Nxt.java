@@ -18,6 +18,7 @@ package org.xel;
 
 import org.xel.PowAndBounty;
 import org.xel.addons.AddOns;
+import org.xel.computation.ExecutionEngine;
 import org.xel.computation.MessageEncoder;
 import org.xel.crypto.Crypto;
 import org.xel.env.DirProvider;
@@ -379,6 +380,8 @@ public final class Nxt {
         BlockchainProcessorImpl.getInstance().shutdown();
         TemporaryComputationBlockchainProcessorImpl.getInstance().shutdown();
         Peers.shutdown();
+        MessageEncoder.shutdown();
+        ExecutionEngine.shutdown();
         Db.shutdown();
         Logger.logShutdownMessage("Nxt server " + VERSION + " stopped.");
         Logger.shutdown();
@@ -423,6 +426,7 @@ public final class Nxt {
                 Users.init();
                 DebugTrace.init();
                 AlternativeChainPubkeys.init();
+                ComputationTransactionIndex.init();
 
                 int timeMultiplier = (Constants.isTestnet && Constants.isOffline) ? Math.max(Nxt.getIntProperty("nxt.timeMultiplier"), 1) : 1;
                 ThreadPool.start(timeMultiplier);
@@ -1221,6 +1221,29 @@ class NxtDbVersion extends DbVersion {
             case 520:
                 apply("CREATE UNIQUE INDEX IF NOT EXISTS acp_idx ON acp (id)");
             case 521:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bounty_work_pow_idx ON pow_and_bounty (work_id, is_pow, latest, height)");
+            case 522:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bounty_work_paid_idx ON pow_and_bounty (work_id, was_paid, latest)");
+            case 523:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bounty_work_multiplier_idx ON pow_and_bounty (work_id, multiplier)");
+            case 524:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bounty_work_verificator_hash_idx ON pow_and_bounty (work_id, verificator_hash)");
+            case 525:
+                apply("CREATE INDEX IF NOT EXISTS pow_and_bounty_hash_idx ON pow_and_bounty (hash)");
+            case 526:
+                apply("CREATE TABLE IF NOT EXISTS work_source (db_id IDENTITY, hash BINARY(32) NOT NULL, source VARBINARY NOT NULL)");
+            case 527:
+                apply("CREATE UNIQUE INDEX IF NOT EXISTS work_source_hash_idx ON work_source (hash)");
+            case 528:
+                apply("ALTER TABLE work ADD COLUMN IF NOT EXISTS source_hash BINARY(32)");
+            case 529:
+                apply("MERGE INTO work_source (hash, source) KEY (hash) SELECT DISTINCT HASH('SHA256', STRINGTOUTF8(source_code), 1), "
+                        + "STRINGTOUTF8(source_code) FROM work");
+            case 530:
+                apply("UPDATE work SET source_hash = HASH('SHA256', STRINGTOUTF8(source_code), 1)");
+            case 531:
+                apply("ALTER TABLE work DROP COLUMN IF EXISTS source_code");
+            case 532:
                 return;
             default:
                 throw new RuntimeException("Blockchain database inconsistent with code, at update " + nextUpdate
@@ -143,6 +143,18 @@ public final class PowAndBounty{
         protected void save(final Connection con, final PowAndBounty participant) throws SQLException {
             participant.save(con);
         }
+
+        @Override
+        public void rollback(final int height) {
+            super.rollback(height);
+            WorkSubmissionIndex.clear();
+        }
+
+        @Override
+        public void truncate() {
+            super.truncate();
+            WorkSubmissionIndex.clear();
+        }
     };
 
     public static void addPowBty(final Transaction transaction, final CommandPowBty attachment) {
@@ -222,10 +234,20 @@ public final class PowAndBounty{
 
 
     public static int getUnpaidSubmissionCount(final long wid) {
+        WorkSubmissionIndex.Counters counters = WorkSubmissionIndex.getCounters(wid);
+        return (counters != null) ? counters.unpaid : countUnpaidSubmissions(wid);
+    }
+
+    static int countUnpaidSubmissions(final long wid) {
         return PowAndBounty.powAndBountyTable
                 .getCount(new DbClause.LongClause("work_id", wid).and(new DbClause.BooleanClause("was_paid", false)).and(new DbClause.BooleanClause("latest", true)));
     }
 
+    static int countSubmissions(final long wid, final boolean pow) {
+        return PowAndBounty.powAndBountyTable
+                .getCount(new DbClause.LongClause("work_id", wid).and(new DbClause.BooleanClause("is_pow", pow)).and(new DbClause.BooleanClause("latest", true)));
+    }
+
     public static DbIterator<PowAndBounty> getUnpaidSubmission(final long wid) {
         return PowAndBounty.powAndBountyTable
                 .getManyBy(new DbClause.LongClause("work_id", wid).and(new DbClause.BooleanClause("was_paid", false)).and(new DbClause.BooleanClause("latest", true)), 0,
@@ -245,21 +267,29 @@ public final class PowAndBounty{
     }
 
 
+    // id breaks ties between bounties of one block, without it H2's top-n sort returns them in a random order
     public static DbIterator<PowAndBounty> getLastBountiesRelevantForStorageGeneration(final long wid, int fullrounds, int skip, long index){
         return PowAndBounty.powAndBountyTable.getManyBy(new DbClause.LongClause("work_id", wid)
                         .and(new DbClause.BooleanClause("is_pow", false)).and(new DbClause.BooleanClause("latest", true)), skip+(int)index,
-                skip+(int)index, " ORDER BY height DESC");
+                skip+(int)index, " ORDER BY height DESC, id DESC");
+    }
+
+    // all bounties in the reverse order of getLastBountiesRelevantForStorageGeneration, oldest first
+    static DbIterator<PowAndBounty> getBountiesForStorageIndex(final long wid){
+        return PowAndBounty.powAndBountyTable.getManyBy(new DbClause.LongClause("work_id", wid)
+                        .and(new DbClause.BooleanClause("is_pow", false)).and(new DbClause.BooleanClause("latest", true)), 0,
+                -1, " ORDER BY height ASC, id ASC");
     }
 
 
     static int getBountyCount(final long wid) {
-        return PowAndBounty.powAndBountyTable
-                .getCount(new DbClause.LongClause("work_id", wid).and(new DbClause.BooleanClause("is_pow", false)));
+        WorkSubmissionIndex.Counters counters = WorkSubmissionIndex.getCounters(wid);
+        return (counters != null) ? counters.bounties : countSubmissions(wid, false);
     }
 
     static int getPowCount(final long wid) {
-        return PowAndBounty.powAndBountyTable
-                .getCount(new DbClause.LongClause("work_id", wid).and(new DbClause.BooleanClause("is_pow", true)));
+        WorkSubmissionIndex.Counters counters = WorkSubmissionIndex.getCounters(wid);
+        return (counters != null) ? counters.pows : countSubmissions(wid, true);
     }
 
     public static PowAndBounty getPowOrBountyById(final long id) {
@@ -322,6 +352,9 @@ public final class PowAndBounty{
     private final byte[] submitted_storage;
     private final byte[] publickey;
     private int timestampReceived = 0;
+    private int height;
+    // was_paid of the latest saved row, null while the submission has no row yet
+    private Boolean persistedPaid;
 
     public boolean isWas_paid() {
         return was_paid;
@@ -356,6 +389,8 @@ public final class PowAndBounty{
         this.storage_bucket = rs.getInt("storage_bucket");
         this.timestampReceived = rs.getInt("timestamp");
         this.publickey = rs.getBytes("publickey");
+        this.height = rs.getInt("height");
+        this.persistedPaid = this.was_paid;
     }
 
     public byte[] getSubmitted_storage() {
@@ -380,6 +415,10 @@ public final class PowAndBounty{
         this.publickey = attachment.getPublickey();
     }
 
+    int getHeight() {
+        return this.height;
+    }
+
     public long getAccountId() {
         return this.accountId;
     }
@@ -407,8 +446,11 @@ public final class PowAndBounty{
             pstmt.setBoolean(++i, this.was_paid);
             DbUtils.setBytes(pstmt, ++i, this.publickey);
             pstmt.setInt(++i, this.timestampReceived);
-            pstmt.setInt(++i, Nxt.getTemporaryComputationBlockchain().getHeight());
+            this.height = Nxt.getTemporaryComputationBlockchain().getHeight();
+            pstmt.setInt(++i, this.height);
             pstmt.executeUpdate();
         }
+        WorkSubmissionIndex.onSave(this, this.height, this.persistedPaid);
+        this.persistedPaid = this.was_paid;
     }
 }
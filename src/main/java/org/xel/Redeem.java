@@ -79,6 +79,18 @@ public final class Redeem {
         protected void save(final Connection con, final Redeem prunableSourceCode) throws SQLException {
             prunableSourceCode.save(con);
         }
+
+        @Override
+        public void rollback(final int height) {
+            super.rollback(height);
+            RedeemedAmounts.onRollback(height);
+        }
+
+        @Override
+        public void truncate() {
+            super.truncate();
+            RedeemedAmounts.onTruncate();
+        }
     };
     public  static int[] times;
 
@@ -95,6 +107,7 @@ public final class Redeem {
                     + " at height " + height);
         redeem.update(transaction);
         Redeem.redeemTable.insert(redeem);
+        RedeemedAmounts.onAdd(redeem.id, redeem.height, redeem.amount);
     }
 
     public static DbIterator<Redeem> getAll(final int from, final int to) {
@@ -234,24 +247,9 @@ public final class Redeem {
     }
 
     public static long getGuaranteedRedeemed(int height) {
-
         // Adjust to guaranteed level
         height = height - Math.min(Constants.GUARANTEED_BALANCE_CONFIRMATIONS, height - 1);
-
-        try (Connection con = Db.db.getConnection();
-             PreparedStatement pstmt = con
-                     .prepareStatement("SELECT SUM(AMOUNT) as amount FROM redeems WHERE height <= ? AND latest = true")) {
-            pstmt.setInt(1, height);
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs.next()) {
-                    final long redeemed = rs.getLong("amount");
-                    //Logger.logInfoMessage("Guaranteed redeemed balance: ~" + redeemed/Constants.ONE_NXT + " XEL");
-                    return redeemed;
-                } else return 0L;
-            }
-        } catch (final SQLException e) {
-            throw new RuntimeException(e.toString(), e);
-        }
+        return RedeemedAmounts.getRedeemed(height);
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,160 @@
+package org.xel;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.xel.db.TransactionalDb;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory copy of the committed redeems (height and amount), with a running total by height so that forging
+ * does not have to sum up the redeems table for every hit. It is loaded from the redeems table on first use,
+ * changes made inside a database transaction are applied when it commits and dropped when it rolls back.
+ */
+final class RedeemedAmounts {
+
+    // redeem id -> {height, amount}
+    private static final Map<Long, long[]> redeems = new HashMap<>();
+    private static boolean loaded = false;
+
+    // ascending heights and the total redeemed up to and including each of them, null when they need a rebuild
+    private static int[] heights;
+    private static long[] totals;
+
+    private static final ThreadLocal<List<Runnable>> pending = new ThreadLocal<>();
+
+    private static final TransactionalDb.TransactionCallback transactionListener = new TransactionalDb.TransactionCallback() {
+        @Override
+        public void commit() {
+            List<Runnable> changes = pending.get();
+            pending.remove();
+            if (changes != null) {
+                synchronized (RedeemedAmounts.class) {
+                    changes.forEach(Runnable::run);
+                }
+            }
+        }
+
+        @Override
+        public void rollback() {
+            pending.remove();
+        }
+    };
+
+    static synchronized long getRedeemed(int height) {
+        if (!loaded) {
+            load();
+        }
+        if (heights == null) {
+            rebuild();
+        }
+        int index = Arrays.binarySearch(heights, height);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return index < 0 ? 0 : totals[index];
+    }
+
+    static void onAdd(long id, int height, long amount) {
+        whenCommitted(() -> {
+            if (loaded) {
+                redeems.put(id, new long[] {height, amount});
+                heights = null;
+            }
+        });
+    }
+
+    static void onRollback(int height) {
+        whenCommitted(() -> {
+            if (redeems.values().removeIf(redeem -> redeem[0] > height)) {
+                heights = null;
+            }
+        });
+    }
+
+    static void onTruncate() {
+        whenCommitted(() -> {
+            redeems.clear();
+            loaded = false;
+            heights = null;
+        });
+    }
+
+    private static void whenCommitted(Runnable change) {
+        if (!Db.db.isInTransaction()) {
+            synchronized (RedeemedAmounts.class) {
+                change.run();
+            }
+            return;
+        }
+        List<Runnable> changes = pending.get();
+        if (changes == null) {
+            changes = new ArrayList<>();
+            pending.set(changes);
+        }
+        changes.add(change);
+        Db.db.registerCallback(transactionListener);
+    }
+
+    private static void load() {
+        redeems.clear();
+        try (Connection con = Db.db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT id, height, amount FROM redeems WHERE latest = true");
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                redeems.put(rs.getLong("id"), new long[] {rs.getInt("height"), rs.getLong("amount")});
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        loaded = true;
+        heights = null;
+    }
+
+    private static void rebuild() {
+        long[][] sorted = redeems.values().toArray(new long[0][]);
+        Arrays.sort(sorted, (a, b) -> Long.compare(a[0], b[0]));
+        int[] newHeights = new int[sorted.length];
+        long[] newTotals = new long[sorted.length];
+        int count = 0;
+        long total = 0;
+        for (long[] redeem : sorted) {
+            total += redeem[1];
+            if (count > 0 && newHeights[count - 1] == redeem[0]) {
+                newTotals[count - 1] = total;
+            } else {
+                newHeights[count] = (int) redeem[0];
+                newTotals[count] = total;
+                count++;
+            }
+        }
+        heights = Arrays.copyOf(newHeights, count);
+        totals = Arrays.copyOf(newTotals, count);
+    }
+
+    private RedeemedAmounts() {}
+
+}
@@ -0,0 +1,158 @@
+package org.xel;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.bitcoinj.core.ECKey;
+import org.xel.util.Logger;
+
+import java.security.SignatureException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Checks the signatures of downloaded blocks and their transactions on a fork-join pool before the blockchain lock
+ * is taken. The results are remembered on the blocks and transactions, so the serial validation only has to check
+ * a flag. Anything that could not be checked here is verified as before during validation.
+ *
+ * Also recovers the signers of the secp256k1 signatures in redeem transactions. Those are checked again on every
+ * unconfirmed acceptance, block validation and rescan, so the recovered addresses are cached.
+ */
+final class SignatureVerifier {
+
+    private static final int THREADS = Nxt.getIntProperty("nxt.signatureVerificationThreads", Runtime.getRuntime().availableProcessors());
+    private static final ForkJoinPool pool = THREADS > 1 ? new ForkJoinPool(THREADS) : null;
+
+    private static final int MAX_REDEEM_SIGNERS = 4096;
+    // message and signature -> address, only successful recoveries are kept
+    private static final Map<String, String> redeemSigners = new LinkedHashMap<String, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+            return size() > MAX_REDEEM_SIGNERS;
+        }
+    };
+
+    static void verify(Collection<BlockImpl> blocks, boolean computational) {
+        if (pool == null || blocks.isEmpty()) {
+            return;
+        }
+        List<Runnable> checks = new ArrayList<>();
+        for (BlockImpl block : blocks) {
+            checks.add(block::preverifySignature);
+            for (TransactionImpl transaction : block.getTransactions()) {
+                checks.add(computational ? transaction::preverifySignatureComputational : transaction::preverifySignature);
+            }
+        }
+        if (checks.size() < 2) {
+            return;
+        }
+        try {
+            pool.submit(() -> checks.parallelStream().forEach(Runnable::run)).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            Logger.logDebugMessage("Signature pre-verification failed", e.getCause());
+        }
+    }
+
+    /**
+     * Returns the address that signed the message for each of the signatures, in the same order. An entry is null
+     * if the key was recovered but could not be turned into an address.
+     *
+     * @throws NxtException.NotValidException if a signature is invalid
+     */
+    static List<String> getRedeemSigners(String message, List<String> signatures) throws NxtException.NotValidException {
+        List<String> signers = new ArrayList<>(signatures.size());
+        List<Integer> missing = new ArrayList<>();
+        synchronized (redeemSigners) {
+            for (String signature : signatures) {
+                String signer = redeemSigners.get(message + '\n' + signature);
+                if (signer == null) {
+                    missing.add(signers.size());
+                }
+                signers.add(signer);
+            }
+        }
+        if (missing.isEmpty()) {
+            return signers;
+        }
+        if (pool == null || missing.size() == 1) {
+            for (int index : missing) {
+                signers.set(index, recoverRedeemSigner(message, signatures.get(index)));
+            }
+        } else {
+            List<Callable<String>> recoveries = new ArrayList<>(missing.size());
+            for (int index : missing) {
+                recoveries.add(() -> recoverRedeemSigner(message, signatures.get(index)));
+            }
+            List<Future<String>> results = pool.invokeAll(recoveries);
+            try {
+                for (int i = 0; i < missing.size(); i++) {
+                    signers.set(missing.get(i), results.get(i).get());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new NxtException.NotValidException("Redeem signature verification interrupted");
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof NxtException.NotValidException) {
+                    throw (NxtException.NotValidException) e.getCause();
+                }
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new NxtException.NotValidException("Invalid signatures provided", e.getCause());
+            }
+        }
+        synchronized (redeemSigners) {
+            for (int index : missing) {
+                String signer = signers.get(index);
+                if (signer != null) {
+                    redeemSigners.put(message + '\n' + signatures.get(index), signer);
+                }
+            }
+        }
+        return signers;
+    }
+
+    private static String recoverRedeemSigner(String message, String signature) throws NxtException.NotValidException {
+        ECKey key;
+        try {
+            key = ECKey.signedMessageToKey(message, signature);
+        } catch (SignatureException e) {
+            throw new NxtException.NotValidException("Invalid signatures provided");
+        }
+        if (key == null) {
+            throw new NxtException.NotValidException("Invalid signatures provided");
+        }
+        try {
+            return key.toAddress(Constants.MAINNET_PARAMS).toString();
+        } catch (Exception e) {
+            Logger.logDebugMessage("Cannot convert redeem signer key to an address", e);
+            return null;
+        }
+    }
+
+    private SignatureVerifier() {}
+
+}
@@ -58,6 +58,7 @@ final class TemporaryComputationBlockDb {
             heightMap.clear();
             transactionCache.clear();
         }
+        ComputationTransactionIndex.clear();
     }
 
     static BlockImpl findBlock(long blockId) {
@@ -371,6 +371,7 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
                 getList.add(new GetNextBlocks(chainBlockIds, start, Math.min(start + segSize, stop)));
             }
             int nextPeerIndex = ThreadLocalRandom.current().nextInt(connectedPublicPeers.size());
+            int nextPushIndex = 1;
             long maxResponseTime = 0;
             Peer slowestPeer = null;
             //
@@ -442,6 +443,11 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
                         maxResponseTime = nextBlocks.getResponseTime();
                         slowestPeer = nextBlocks.getPeer();
                     }
+                    //
+                    // Push the blocks that extend our chain while the remaining
+                    // segments are still being downloaded and verified
+                    //
+                    nextPushIndex = pushDownloadedBlocks(blockMap, nextPushIndex, startHeight);
                 }
 
             }
@@ -457,7 +463,7 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
             blockchain.writeLock();
             try {
                 List<BlockImpl> forkBlocks = new ArrayList<>();
-                for (int index = 1; index < chainBlockIds.size() && blockchain.getHeight() - startHeight < 720; index++) {
+                for (int index = nextPushIndex; index < chainBlockIds.size() && blockchain.getHeight() - startHeight < 720; index++) {
                     PeerBlock peerBlock = blockMap.get(chainBlockIds.get(index));
                     if (peerBlock == null) {
                         break;
@@ -487,6 +493,34 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
 
         }
 
+        /**
+         * Push the downloaded blocks, in chain order, as long as they extend the current last block
+         *
+         * @param   blockMap                Downloaded blocks
+         * @param   index                   Index of the next block to push within the block identifier list
+         * @param   startHeight             Height of the common block
+         * @return                          Index of the next block to push
+         */
+        private int pushDownloadedBlocks(final Map<Long, PeerBlock> blockMap, int index, final int startHeight) {
+            blockchain.writeLock();
+            try {
+                for (; index < chainBlockIds.size() && blockchain.getHeight() - startHeight < 720; index++) {
+                    PeerBlock peerBlock = blockMap.get(chainBlockIds.get(index));
+                    if (peerBlock == null || blockchain.getLastBlock().getId() != peerBlock.getBlock().getPreviousBlockId()) {
+                        break;
+                    }
+                    try {
+                        pushBlock(peerBlock.getBlock());
+                    } catch (BlockNotAcceptedException e) {
+                        peerBlock.getPeer().blacklist(e);
+                    }
+                }
+            } finally {
+                blockchain.writeUnlock();
+            }
+            return index;
+        }
+
         private void processFork(final Peer peer, final List<BlockImpl> forkBlocks, final Block commonBlock) {
 
             BigInteger curCumulativeDifficulty = blockchain.getLastBlock().getCumulativeDifficulty();
@@ -600,7 +634,7 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
             request.put("blockIds", idList);
             request.put("blockId", Long.toUnsignedString(blockIds.get(start)));
             long startTime = System.currentTimeMillis();
-            JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+            JSONObject response = peer.send(JSON.prepareRequest(request), request, 10 * 1024 * 1024);
             responseTime = System.currentTimeMillis() - startTime;
             if (response == null) {
                 return null;
@@ -631,6 +665,7 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
                 peer.blacklist(e);
                 stop = start + blockList.size();
             }
+            SignatureVerifier.verify(blockList, true);
             return blockList;
         }
 
@@ -921,6 +956,7 @@ public final class TemporaryComputationBlockchainProcessorImpl implements Blockc
     @Override
     public void processPeerBlock(JSONObject request) throws NxtException {
         BlockImpl block = BlockImpl.parseBlockComputation(request);
+        SignatureVerifier.verify(Collections.singletonList(block), true);
         BlockImpl lastBlock = blockchain.getLastBlock();
         if (block.getPreviousBlockId() == lastBlock.getId()) {
             pushBlock(block);
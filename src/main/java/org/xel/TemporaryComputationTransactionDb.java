@@ -71,6 +71,11 @@ final class TemporaryComputationTransactionDb {
                         Arrays.equals(transaction.fullHash(), fullHash) ? transaction : null);
             }
         }
+        // Check the index of recent message transactions
+        TransactionImpl indexed = ComputationTransactionIndex.get(transactionId);
+        if (indexed != null && Arrays.equals(indexed.fullHash(), fullHash)) {
+            return indexed.getHeight() <= height ? indexed : null;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT * FROM transaction_comp WHERE id = ?")) {
@@ -127,6 +132,10 @@ final class TemporaryComputationTransactionDb {
                         Arrays.equals(transaction.fullHash(), fullHash));
             }
         }
+        TransactionImpl indexed = ComputationTransactionIndex.get(transactionId);
+        if (indexed != null && Arrays.equals(indexed.fullHash(), fullHash)) {
+            return indexed.getHeight() <= height;
+        }
         // Search the database
         try (Connection con = Db.db.getConnection();
              PreparedStatement pstmt = con.prepareStatement("SELECT full_hash, height FROM transaction_comp WHERE id = ?")) {
@@ -30,6 +30,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static org.xel.TransactionType.SUBTYPE_PAYMENT_REDEEM;
 import static org.xel.TransactionType.TYPE_PAYMENT;
@@ -226,6 +227,11 @@ public final class TemporaryComputationTransactionProcessorImpl implements Trans
 
     };
 
+    // an unsigned id with its quotes and separator in the exclude list
+    private static final int EXCLUDED_ID_SIZE = 22;
+
+    private volatile int sketchCells = Constants.MIN_TRANSACTION_SKETCH_CELLS;
+
     private final Runnable processTransactionsThread = () -> {
 
         try {
@@ -237,13 +243,7 @@ public final class TemporaryComputationTransactionProcessorImpl implements Trans
                 if (peer == null) {
                     return;
                 }
-                JSONObject request = new JSONObject();
-                request.put("requestType", "getUnconfirmedTransactionsComputation");
-                JSONArray exclude = new JSONArray();
-                getAllUnconfirmedTransactionIds().forEach(transactionId -> exclude.add(Long.toUnsignedString(transactionId)));
-                Collections.sort(exclude);
-                request.put("exclude", exclude);
-                JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+                JSONObject response = requestUnconfirmedTransactions(peer);
                 if (response == null) {
                     return;
                 }
@@ -352,6 +352,70 @@ public final class TemporaryComputationTransactionProcessorImpl implements Trans
         return unconfirmedTransactionTable.get(dbKey);
     }
 
+    /**
+     * Ask a peer for the unconfirmed transactions we do not have. Peers supporting it get a sketch of our pool, sized
+     * for the difference the peer reported last time, so the request does not grow with the pool. A peer that cannot
+     * decode the sketch answers with an estimate of the difference, which sizes the retry. Other peers, and
+     * differences for which a sketch would not be smaller than our id list, get the list of all our transaction ids.
+     *
+     * @param   peer                    Peer
+     * @return                          Peer response or null
+     */
+    private JSONObject requestUnconfirmedTransactions(Peer peer) {
+        List<Long> transactionIds = getAllUnconfirmedTransactionIds();
+        JSONObject request = new JSONObject();
+        request.put("requestType", "getUnconfirmedTransactionsComputation");
+        if (Peers.useTransactionSketches && peer.providesService(Peer.Service.TRANSACTION_SKETCHES)) {
+            int cells = sketchCells;
+            while (useSketch(cells, transactionIds.size())) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                IdSketch sketch = new IdSketch(cells, seed);
+                transactionIds.forEach(sketch::add);
+                byte[] sketchBytes = sketch.getBytes();
+                request.put("sketch", Convert.toHexString(sketchBytes));
+                request.put("seed", Long.toUnsignedString(seed));
+                JSONObject binaryRequest = new JSONObject();
+                binaryRequest.putAll(request);
+                binaryRequest.put("sketch", sketchBytes);
+                binaryRequest.put("protocol", 1);
+                JSONObject response = peer.send(JSON.prepareRequest(request), binaryRequest, 10 * 1024 * 1024);
+                if (response == null) {
+                    return null;
+                }
+                if (response.get("sketchFailed") == null) {
+                    sketchCells = getSketchCells(response);
+                    return response;
+                }
+                // the estimate can be low when both pools have transactions the other lacks
+                cells = Math.max(getSketchCells(response), 2 * cells);
+            }
+            request.remove("sketch");
+            request.remove("seed");
+        }
+        JSONArray exclude = new JSONArray();
+        transactionIds.forEach(transactionId -> exclude.add(Long.toUnsignedString(transactionId)));
+        Collections.sort(exclude);
+        request.put("exclude", exclude);
+        JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+        if (response != null) {
+            sketchCells = getSketchCells(response);
+        }
+        return response;
+    }
+
+    // a sketch only pays off while it is smaller than the exclude list it replaces
+    private static boolean useSketch(int cells, int transactionCount) {
+        return cells <= Constants.MAX_TRANSACTION_SKETCH_CELLS
+                && IdSketch.getByteSize(cells) < (long) transactionCount * EXCLUDED_ID_SIZE;
+    }
+
+    // twice the difference reported by the peer, which leaves room for transactions arriving until the next poll
+    private static int getSketchCells(JSONObject response) {
+        Object difference = response.get("difference");
+        long cells = difference instanceof Number ? 2 * ((Number) difference).longValue() : 0;
+        return (int) Math.max(Constants.MIN_TRANSACTION_SKETCH_CELLS, Math.min(cells, 2L * Constants.MAX_TRANSACTION_SKETCH_CELLS));
+    }
+
     private List<Long> getAllUnconfirmedTransactionIds() {
         List<Long> result = new ArrayList<>();
         try (Connection con = Db.db.getConnection();
@@ -397,40 +461,75 @@ public final class TemporaryComputationTransactionProcessorImpl implements Trans
     public void broadcast(Transaction transaction) throws NxtException.ValidationException {
         TemporaryComputationBlockchainImpl.getInstance().writeLock();
         try {
-            if (TemporaryComputationTransactionDb.hasTransaction(transaction.getId())) {
-                Logger.logMessage("Transaction (computational) " + transaction.getStringId() + " already in blockchain, will not broadcast again");
-                return;
+            if (broadcastLocked(transaction)) {
+                List<Transaction> acceptedTransactions = Collections.singletonList(transaction);
+                Peers.sendToSomePeersComputation(acceptedTransactions);
+                transactionListeners.notify(acceptedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS_COMPUTATION);
             }
-            if (getUnconfirmedTransaction(((TransactionImpl)transaction).getDbKeyComputation()) != null) {
-                if (enableTransactionRebroadcasting) {
-                    broadcastedTransactions.add((TransactionImpl) transaction);
-                    Logger.logMessage("Transaction (computational) " + transaction.getStringId() + " already in unconfirmed pool, will re-broadcast");
-                } else {
-                    Logger.logMessage("Transaction (computational) " + transaction.getStringId() + " already in unconfirmed pool, will not broadcast again");
+        }finally {
+            TemporaryComputationBlockchainImpl.getInstance().writeUnlock();
+        }
+    }
+
+    /**
+     * Broadcasts many transactions under one lock and sends the accepted ones to the peers together. The returned
+     * list is parallel to the given one and holds the reason a transaction was rejected, or null.
+     */
+    public List<NxtException.ValidationException> broadcast(List<? extends Transaction> transactions) {
+        List<NxtException.ValidationException> errors = new ArrayList<>(transactions.size());
+        List<Transaction> acceptedTransactions = new ArrayList<>();
+        TemporaryComputationBlockchainImpl.getInstance().writeLock();
+        try {
+            for (Transaction transaction : transactions) {
+                try {
+                    if (broadcastLocked(transaction)) {
+                        acceptedTransactions.add(transaction);
+                    }
+                    errors.add(null);
+                } catch (NxtException.ValidationException e) {
+                    errors.add(e);
                 }
-                return;
             }
-            transaction.validateComputational();
-            UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction((TransactionImpl) transaction, System.currentTimeMillis());
-            boolean broadcastLater = TemporaryComputationBlockchainProcessorImpl.getInstance().isProcessingBlock();
-            if (broadcastLater) {
-                waitingTransactions.add(unconfirmedTransaction);
-                broadcastedTransactions.add((TransactionImpl) transaction);
-                Logger.logDebugMessage("Will broadcast new transaction later " + transaction.getStringId());
-            } else {
-                processTransaction(unconfirmedTransaction);
-                //Logger.logDebugMessage("Accepted new transaction " + transaction.getStringId());
-                List<Transaction> acceptedTransactions = Collections.singletonList(transaction);
+            if (!acceptedTransactions.isEmpty()) {
                 Peers.sendToSomePeersComputation(acceptedTransactions);
                 transactionListeners.notify(acceptedTransactions, Event.ADDED_UNCONFIRMED_TRANSACTIONS_COMPUTATION);
-                if (enableTransactionRebroadcasting) {
-                    broadcastedTransactions.add((TransactionImpl) transaction);
-                }
             }
-
         }finally {
             TemporaryComputationBlockchainImpl.getInstance().writeUnlock();
         }
+        return errors;
+    }
+
+    // returns true if the transaction was accepted right now and still has to be sent to peers and listeners
+    private boolean broadcastLocked(Transaction transaction) throws NxtException.ValidationException {
+        if (TemporaryComputationTransactionDb.hasTransaction(transaction.getId())) {
+            Logger.logMessage("Transaction (computational) " + transaction.getStringId() + " already in blockchain, will not broadcast again");
+            return false;
+        }
+        if (getUnconfirmedTransaction(((TransactionImpl)transaction).getDbKeyComputation()) != null) {
+            if (enableTransactionRebroadcasting) {
+                broadcastedTransactions.add((TransactionImpl) transaction);
+                Logger.logMessage("Transaction (computational) " + transaction.getStringId() + " already in unconfirmed pool, will re-broadcast");
+            } else {
+                Logger.logMessage("Transaction (computational) " + transaction.getStringId() + " already in unconfirmed pool, will not broadcast again");
+            }
+            return false;
+        }
+        transaction.validateComputational();
+        UnconfirmedTransaction unconfirmedTransaction = new UnconfirmedTransaction((TransactionImpl) transaction, System.currentTimeMillis());
+        boolean broadcastLater = TemporaryComputationBlockchainProcessorImpl.getInstance().isProcessingBlock();
+        if (broadcastLater) {
+            waitingTransactions.add(unconfirmedTransaction);
+            broadcastedTransactions.add((TransactionImpl) transaction);
+            Logger.logDebugMessage("Will broadcast new transaction later " + transaction.getStringId());
+            return false;
+        }
+        processTransaction(unconfirmedTransaction);
+        //Logger.logDebugMessage("Accepted new transaction " + transaction.getStringId());
+        if (enableTransactionRebroadcasting) {
+            broadcastedTransactions.add((TransactionImpl) transaction);
+        }
+        return true;
     }
 
     @Override
@@ -126,6 +126,11 @@ public interface Transaction {
 
     JSONObject getJSONObjectComputational();
 
+    // transaction bytes plus prunable attachments, only for the binary peer protocol
+    JSONObject getBinaryJSONObject();
+
+    JSONObject getBinaryJSONObjectComputational();
+
     JSONObject getPrunableAttachmentJSON();
 
     byte getVersion();
@@ -1084,6 +1084,23 @@ final class TransactionImpl implements Transaction {
         return json;
     }
 
+    @Override
+    public JSONObject getBinaryJSONObject() {
+        JSONObject json = new JSONObject();
+        json.put("transactionBytes", getBytes());
+        JSONObject prunableJSON = getPrunableAttachmentJSON();
+        if (prunableJSON != null) {
+            json.put("prunableAttachmentJSON", prunableJSON);
+        }
+        return json;
+    }
+
+    @Override
+    public JSONObject getBinaryJSONObjectComputational() {
+        getSenderPublicKeyComputational(); // the bytes need the public key of the computation chain identity
+        return getBinaryJSONObject();
+    }
+
     @Override
     public JSONObject getPrunableAttachmentJSON() {
         JSONObject prunableJSON = null;
@@ -1101,7 +1118,11 @@ final class TransactionImpl implements Transaction {
     }
 
     static TransactionImpl parseTransaction(JSONObject transactionData) throws NxtException.NotValidException {
-        TransactionImpl transaction = newTransactionBuilder(transactionData).build();
+        Object transactionBytes = transactionData.get("transactionBytes");
+        BuilderImpl builder = transactionBytes instanceof byte[]
+                ? newTransactionBuilder((byte[]) transactionBytes, (JSONObject) transactionData.get("prunableAttachmentJSON"))
+                : newTransactionBuilder(transactionData);
+        TransactionImpl transaction = builder.build();
         /*
         if (transaction.getSignature() != null && !transaction.checkSignature()) {
             throw new NxtException.NotValidException("Invalid transaction signature for transaction " + transaction.getJSONObject().toJSONString());
@@ -1111,7 +1132,11 @@ final class TransactionImpl implements Transaction {
     }
 
     static TransactionImpl parseTransactionComputation(JSONObject transactionData) throws NxtException.NotValidException {
-        TransactionImpl transaction = newTransactionBuilder(transactionData).buildComputation(0);
+        Object transactionBytes = transactionData.get("transactionBytes");
+        BuilderImpl builder = transactionBytes instanceof byte[]
+                ? newTransactionBuilderComputational((byte[]) transactionBytes, (JSONObject) transactionData.get("prunableAttachmentJSON"))
+                : newTransactionBuilder(transactionData);
+        TransactionImpl transaction = builder.buildComputation(0);
         transaction.getSenderPublicKeyComputational(); // make sure pubkey is restored properly
         if (transaction.getSignature() != null && !transaction.checkSignatureComputational()) {
             throw new NxtException.NotValidException("Invalid transaction signature for transaction " + transaction.getJSONObject().toJSONString());
@@ -1274,11 +1299,38 @@ final class TransactionImpl implements Transaction {
 
     private volatile boolean hasValidSignature = false;
 
-    private boolean checkSignature() {
+    /**
+     * Checks the signature ahead of block validation, possibly off the blockchain lock. Only transactions that carry
+     * their own sender public key are checked here, everything else is left to {@link #verifySignature()}.
+     */
+    void preverifySignature() {
+        if (this.hasValidSignature || this.signature == null || this.senderPublicKey == null
+                || this.getAttachment() instanceof Attachment.RedeemAttachment) {
+            return;
+        }
+        try {
+            this.hasValidSignature = Crypto.verify(this.signature, this.zeroSignature(this.getBytes()), this.senderPublicKey, useNQT());
+        } catch (RuntimeException e) {
+            this.hasValidSignature = false;
+        }
+    }
+
+    void preverifySignatureComputational() {
+        if (this.hasValidSignature || this.signature == null || this.senderPublicKey == null) {
+            return;
+        }
+        try {
+            this.hasValidSignature = Account.getId(this.senderPublicKey) == this.getSenderId()
+                    && Crypto.verify(this.signature, this.zeroSignature(this.getBytes()), this.senderPublicKey, useNQT());
+        } catch (RuntimeException e) {
+            this.hasValidSignature = false;
+        }
+    }
 
-        byte[] toVerifyBytes = this.getBytes();
+    private boolean checkSignature() {
 
         if (!this.hasValidSignature) {
+            byte[] toVerifyBytes = this.getBytes();
             if (this.getAttachment() instanceof Attachment.RedeemAttachment) {
                 byte[] using_Pubkey = Account.getPublicKey(this.recipientId);
                 if (using_Pubkey == null) {
@@ -1305,9 +1357,8 @@ final class TransactionImpl implements Transaction {
 
     private boolean checkSignatureComputational() {
 
-        byte[] toVerifyBytes = this.getBytes();
-
         if (!this.hasValidSignature) {
+                byte[] toVerifyBytes = this.getBytes();
                 this.hasValidSignature = (this.signature != null) && Crypto.verify(this.signature,
                         this.zeroSignature(toVerifyBytes), this.getSenderPublicKeyComputational(), useNQT()) && Account.getId(this.senderPublicKey)==this.getSenderId();
         }
@@ -32,6 +32,7 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 
 import static org.xel.TransactionType.SUBTYPE_PAYMENT_REDEEM;
 import static org.xel.TransactionType.TYPE_PAYMENT;
@@ -228,6 +229,11 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
 
     };
 
+    // an unsigned id with its quotes and separator in the exclude list
+    private static final int EXCLUDED_ID_SIZE = 22;
+
+    private volatile int sketchCells = Constants.MIN_TRANSACTION_SKETCH_CELLS;
+
     private final Runnable processTransactionsThread = () -> {
 
         try {
@@ -239,13 +245,7 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
                 if (peer == null) {
                     return;
                 }
-                JSONObject request = new JSONObject();
-                request.put("requestType", "getUnconfirmedTransactions");
-                JSONArray exclude = new JSONArray();
-                getAllUnconfirmedTransactionIds().forEach(transactionId -> exclude.add(Long.toUnsignedString(transactionId)));
-                Collections.sort(exclude);
-                request.put("exclude", exclude);
-                JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+                JSONObject response = requestUnconfirmedTransactions(peer);
                 if (response == null) {
                     return;
                 }
@@ -354,6 +354,70 @@ public final class TransactionProcessorImpl implements TransactionProcessor {
         return unconfirmedTransactionTable.get(dbKey);
     }
 
+    /**
+     * Ask a peer for the unconfirmed transactions we do not have. Peers supporting it get a sketch of our pool, sized
+     * for the difference the peer reported last time, so the request does not grow with the pool. A peer that cannot
+     * decode the sketch answers with an estimate of the difference, which sizes the retry. Other peers, and
+     * differences for which a sketch would not be smaller than our id list, get the list of all our transaction ids.
+     *
+     * @param   peer                    Peer
+     * @return                          Peer response or null
+     */
+    private JSONObject requestUnconfirmedTransactions(Peer peer) {
+        List<Long> transactionIds = getAllUnconfirmedTransactionIds();
+        JSONObject request = new JSONObject();
+        request.put("requestType", "getUnconfirmedTransactions");
+        if (Peers.useTransactionSketches && peer.providesService(Peer.Service.TRANSACTION_SKETCHES)) {
+            int cells = sketchCells;
+            while (useSketch(cells, transactionIds.size())) {
+                long seed = ThreadLocalRandom.current().nextLong();
+                IdSketch sketch = new IdSketch(cells, seed);
+                transactionIds.forEach(sketch::add);
+                byte[] sketchBytes = sketch.getBytes();
+                request.put("sketch", Convert.toHexString(sketchBytes));
+                request.put("seed", Long.toUnsignedString(seed));
+                JSONObject binaryRequest = new JSONObject();
+                binaryRequest.putAll(request);
+                binaryRequest.put("sketch", sketchBytes);
+                binaryRequest.put("protocol", 1);
+                JSONObject response = peer.send(JSON.prepareRequest(request), binaryRequest, 10 * 1024 * 1024);
+                if (response == null) {
+                    return null;
+                }
+                if (response.get("sketchFailed") == null) {
+                    sketchCells = getSketchCells(response);
+                    return response;
+                }
+                // the estimate can be low when both pools have transactions the other lacks
+                cells = Math.max(getSketchCells(response), 2 * cells);
+            }
+            request.remove("sketch");
+            request.remove("seed");
+        }
+        JSONArray exclude = new JSONArray();
+        transactionIds.forEach(transactionId -> exclude.add(Long.toUnsignedString(transactionId)));
+        Collections.sort(exclude);
+        request.put("exclude", exclude);
+        JSONObject response = peer.send(JSON.prepareRequest(request), 10 * 1024 * 1024);
+        if (response != null) {
+            sketchCells = getSketchCells(response);
+        }
+        return response;
+    }
+
+    // a sketch only pays off while it is smaller than the exclude list it replaces
+    private static boolean useSketch(int cells, int transactionCount) {
+        return cells <= Constants.MAX_TRANSACTION_SKETCH_CELLS
+                && IdSketch.getByteSize(cells) < (long) transactionCount * EXCLUDED_ID_SIZE;
+    }
+
+    // twice the difference reported by the peer, which leaves room for transactions arriving until the next poll
+    private static int getSketchCells(JSONObject response) {
+        Object difference = response.get("difference");
+        long cells = difference instanceof Number ? 2 * ((Number) difference).longValue() : 0;
+        return (int) Math.max(Constants.MIN_TRANSACTION_SKETCH_CELLS, Math.min(cells, 2L * Constants.MAX_TRANSACTION_SKETCH_CELLS));
+    }
+
     private List<Long> getAllUnconfirmedTransactionIds() {
         List<Long> result = new ArrayList<>();
         try (Connection con = Db.db.getConnection();
@@ -27,12 +27,10 @@ import org.xel.util.Convert;
 import org.xel.util.Logger;
 import org.apache.tika.Tika;
 import org.apache.tika.mime.MediaType;
-import org.bitcoinj.core.ECKey;
 import org.bitcoinj.params.MainNetParams;
 import org.json.simple.JSONObject;
 
 import java.nio.ByteBuffer;
-import java.security.SignatureException;
 import java.util.*;
 
 
@@ -471,24 +469,9 @@ public abstract class TransactionType {
 
                 final String message = Redeem.getSignMessage(transaction.getAmountNQT(), attachment.getAddress(), transaction.getRecipientId());
 
-                for (int i = 0; i<signatures.size(); ++i) {
-                    String signature = signatures.get(i);
-                    ECKey result;
-                    try {
-                        new ECKey();
-                        result = ECKey.signedMessageToKey(message, signature);
-                    } catch (final SignatureException e) {
-                        throw new NxtException.NotValidException("Invalid signatures provided");
-                    }
-
-                    if (result == null) throw new NxtException.NotValidException("Invalid signatures provided");
-
-                    try {
-                        final String add = result.toAddress(Constants.MAINNET_PARAMS).toString();
-                        signedBy.add(add);
-                    }
-                    catch(Exception e){
-                        e.printStackTrace();
+                for (String signer : SignatureVerifier.getRedeemSigners(message, signatures)) {
+                    if (signer != null) {
+                        signedBy.add(signer);
                     }
                 }
                 addresses.retainAll(signedBy);
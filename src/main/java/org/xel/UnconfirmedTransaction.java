@@ -301,6 +301,16 @@ class UnconfirmedTransaction implements Transaction {
         return transaction.getJSONObjectComputational();
     }
 
+    @Override
+    public JSONObject getBinaryJSONObject() {
+        return transaction.getBinaryJSONObject();
+    }
+
+    @Override
+    public JSONObject getBinaryJSONObjectComputational() {
+        return transaction.getBinaryJSONObjectComputational();
+    }
+
     @Override
     public JSONObject getPrunableAttachmentJSON() {
         return transaction.getPrunableAttachmentJSON();
@@ -74,7 +74,7 @@ public final class Work {
     }
 
     public String getSource_code() {
-        return source_code;
+        return WorkSourceStore.get(source_hash);
     }
 
     private final long id;
@@ -96,7 +96,7 @@ public final class Work {
     private short blocksRemaining;
     private int closing_timestamp;
     private int storage_size;
-    private String source_code;
+    private final byte[] source_hash;
 
     public int getStorage_size() {
         return storage_size;
@@ -155,7 +155,7 @@ public final class Work {
         this.originating_height = rs.getInt("originating_height");
         this.closing_timestamp = rs.getInt("closing_timestamp");
         this.storage_size = rs.getInt("storage_size");
-        this.source_code = rs.getString("source_code");
+        this.source_hash = rs.getBytes("source_hash");
     }
     private Work(final Transaction transaction, final CommandNewWork attachment) {
         this.id = transaction.getId();
@@ -177,7 +177,7 @@ public final class Work {
         this.originating_height = transaction.getBlock().getHeight();
         this.closing_timestamp = 0;
         this.storage_size = attachment.getStorageSize();
-        this.source_code = new String(attachment.getSourceCode());
+        this.source_hash = WorkSourceStore.put(new String(attachment.getSourceCode()));
     }
 
     public int getCurrentRound(){
@@ -394,7 +394,7 @@ public final class Work {
     private void save(final Connection con) throws SQLException {
         try (PreparedStatement pstmt = con.prepareStatement(
                 "MERGE INTO work (id, cap_number_pow, closing_timestamp, block_id, sender_account_id, xel_per_pow, " +
-                        "iterations, iterations_left, blocks_remaining, closed, cancelled, timedout, xel_per_bounty, received_bounties, received_pows, bounty_limit_per_iteration, originating_height, height, storage_size, source_code, latest) "
+                        "iterations, iterations_left, blocks_remaining, closed, cancelled, timedout, xel_per_bounty, received_bounties, received_pows, bounty_limit_per_iteration, originating_height, height, storage_size, source_hash, latest) "
                         + "KEY (id, height) "
                         + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, TRUE)")) {
             int i = 0;
@@ -417,7 +417,7 @@ public final class Work {
             pstmt.setInt(++i, this.originating_height);
             pstmt.setInt(++i,Nxt.getTemporaryComputationBlockchain().getHeight());
             pstmt.setInt(++i, this.storage_size);
-            pstmt.setString(++i, this.source_code);
+            pstmt.setBytes(++i, this.source_hash);
             pstmt.executeUpdate();
         }catch(Exception e){
             e.printStackTrace();
@@ -541,7 +541,7 @@ public final class Work {
     public static JSONObject toJsonWithSource(Work work, boolean with_source) {
         final JSONObject response = toJson(work);
         if(with_source)
-            response.put("source_code", Ascii85.encode(work.source_code.getBytes()));
+            response.put("source_code", Ascii85.encode(work.getSource_code().getBytes()));
         return response;
     }
 
@@ -561,6 +561,10 @@ public final class Work {
             // consider 'mature combined storage' yet. Make sure to get the right indices here to pull from the db
 
             int unfinished = this.getReceived_bounties() % bounty_limit_per_iteration;
+            int[] indexed = WorkSubmissionIndex.getStorage(this.id, unfinished + (int)storage_slot);
+            if(indexed != null) {
+                return (indexed.length == storage_size) ? indexed : storage_area;
+            }
             try(DbIterator<PowAndBounty> it = PowAndBounty.getLastBountiesRelevantForStorageGeneration(this.id, fullrounds, unfinished, storage_slot)){ // the problem from above is handled in this function
                 PowAndBounty bty = it.next();
                 int[] resbty = Convert.byte2int(bty.getSubmitted_storage());
@@ -0,0 +1,158 @@
+package org.xel;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.xel.crypto.Crypto;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Content addressed store of the ElasticPL source code of works, keyed by the SHA-256 of the UTF-8 encoded source.
+ * Each distinct program is kept once and gzip compressed, work rows only hold the hash. Sources are decompressed on
+ * demand, the most recently used ones are kept in memory.
+ */
+final class WorkSourceStore {
+
+    private static final int MAX_CACHED_SOURCES = 32;
+
+    private static final Map<ByteKey, String> sources = new LinkedHashMap<ByteKey, String>(MAX_CACHED_SOURCES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<ByteKey, String> eldest) {
+            return size() > MAX_CACHED_SOURCES;
+        }
+    };
+
+    private static final class ByteKey {
+        private final byte[] bytes;
+        private final int hashCode;
+
+        ByteKey(byte[] bytes) {
+            this.bytes = bytes;
+            this.hashCode = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ByteKey && Arrays.equals(bytes, ((ByteKey) o).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    /**
+     * Stores the source if it is not known yet and returns its hash. Must be called inside the database transaction
+     * that saves the work.
+     */
+    static byte[] put(String source) {
+        byte[] utf8 = source.getBytes(StandardCharsets.UTF_8);
+        byte[] hash = Crypto.sha256().digest(utf8);
+        try (Connection con = Db.db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("MERGE INTO work_source (hash, source) KEY (hash) VALUES (?, ?)")) {
+            pstmt.setBytes(1, hash);
+            pstmt.setBytes(2, compress(utf8));
+            pstmt.executeUpdate();
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        synchronized (sources) {
+            sources.put(new ByteKey(hash), source);
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the source with that hash, or null if it is not stored.
+     */
+    static String get(byte[] hash) {
+        if (hash == null) {
+            return null;
+        }
+        ByteKey key = new ByteKey(hash);
+        synchronized (sources) {
+            String source = sources.get(key);
+            if (source != null) {
+                return source;
+            }
+        }
+        byte[] stored;
+        try (Connection con = Db.db.getConnection();
+             PreparedStatement pstmt = con.prepareStatement("SELECT source FROM work_source WHERE hash = ?")) {
+            pstmt.setBytes(1, hash);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (!rs.next()) {
+                    return null;
+                }
+                stored = rs.getBytes("source");
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        String source = new String(decompress(stored), StandardCharsets.UTF_8);
+        synchronized (sources) {
+            sources.put(key, source);
+        }
+        return source;
+    }
+
+    private static byte[] compress(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return out.toByteArray();
+    }
+
+    // sources moved over from older databases are stored uncompressed
+    private static byte[] decompress(byte[] data) {
+        if (data.length < 2 || data[0] != (byte) GZIPInputStream.GZIP_MAGIC || data[1] != (byte) (GZIPInputStream.GZIP_MAGIC >> 8)) {
+            return data;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 4);
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = gzip.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e.toString(), e);
+        }
+        return out.toByteArray();
+    }
+
+    private WorkSourceStore() {}
+
+}
@@ -0,0 +1,309 @@
+package org.xel;
+
+import org.xel.db.DbIterator;
+import org.xel.db.TransactionalDb;
+import org.xel.util.Convert;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongFunction;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * In-memory view of the pow_and_bounty table for recently used works: the submission counters and the bounty
+ * storages, the latter ordered by latest row height and then id, like the storage generation query. A bounty that
+ * gets a new row version at a later height (e.g. when it is paid) moves behind every older row, exactly like its row
+ * does in the table, and bounties of one block keep their id order.
+ *
+ * The index always includes the uncommitted rows of the thread that is applying a block. While such writes are
+ * pending, every other thread is answered by the database, so nobody ever sees rows its own connection could not see.
+ * A rollback drops the whole index, works are reloaded lazily.
+ *
+ * The pow and bounty counters count submissions, i.e. latest rows, while the queries they replaced counted every row
+ * version, so a paid submission used to be counted twice. Nothing in consensus reads these two counts.
+ */
+final class WorkSubmissionIndex {
+
+    static final class Counters {
+        int pows;
+        int bounties;
+        int unpaid;
+    }
+
+    static final class Bounty {
+        final long id;
+        final int height;
+        final int[] storage;
+
+        Bounty(long id, int height, int[] storage) {
+            this.id = id;
+            this.height = height;
+            this.storage = storage;
+        }
+    }
+
+    private static final class WorkStorage {
+        // oldest first, by height and id
+        final List<Bounty> bounties = new ArrayList<>();
+        long bytes;
+    }
+
+    private static final long MAX_BYTES = Math.max(0, Nxt.getIntProperty("nxt.storageIndexMaxBytes", 64 * 1024 * 1024));
+    private static final int BOUNTY_OVERHEAD = 48;
+    private static final int MAX_COUNTERS = 10000;
+
+    private static final Map<Long, WorkStorage> works = new LinkedHashMap<>(64, 0.75f, true);
+    private static long totalBytes = 0;
+    private static final Map<Long, Counters> counters = new LinkedHashMap<Long, Counters>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Counters> eldest) {
+            return size() > MAX_COUNTERS;
+        }
+    };
+    private static long generation = 0;
+
+    // threads with uncommitted pow_and_bounty rows
+    private static final ThreadLocal<Boolean> dirty = new ThreadLocal<>();
+    private static int dirtyThreads = 0;
+
+    static final TransactionalDb.TransactionCallback transactionListener = new TransactionalDb.TransactionCallback() {
+        @Override
+        public void commit() {
+            done();
+        }
+
+        @Override
+        public void rollback() {
+            synchronized (WorkSubmissionIndex.class) {
+                done();
+                clear();
+            }
+        }
+
+        private void done() {
+            synchronized (WorkSubmissionIndex.class) {
+                if (dirty.get() != null) {
+                    dirty.remove();
+                    dirtyThreads--;
+                }
+            }
+        }
+    };
+
+    /**
+     * Returns the storage at the given position counted from the most recent bounty, or null if the caller has to
+     * ask the database.
+     */
+    static int[] getStorage(long workId, int fromLatest) {
+        return getStorage(workId, fromLatest, WorkSubmissionIndex::loadBounties);
+    }
+
+    static int[] getStorage(long workId, int fromLatest, LongFunction<List<Bounty>> loader) {
+        if (MAX_BYTES == 0 || fromLatest < 0) {
+            return null;
+        }
+        long startGeneration;
+        synchronized (WorkSubmissionIndex.class) {
+            if (!consistentForCurrentThread()) {
+                return null;
+            }
+            WorkStorage workStorage = works.get(workId);
+            if (workStorage != null) {
+                return storageAt(workStorage, fromLatest);
+            }
+            startGeneration = generation;
+        }
+        WorkStorage loaded = new WorkStorage();
+        for (Bounty bounty : loader.apply(workId)) {
+            loaded.bounties.add(bounty);
+            loaded.bytes += sizeOf(bounty);
+        }
+        synchronized (WorkSubmissionIndex.class) {
+            if (generation != startGeneration || !consistentForCurrentThread()) {
+                return null; // something changed while loading, let the database answer this one
+            }
+            works.put(workId, loaded);
+            totalBytes += loaded.bytes;
+            evict();
+            return storageAt(loaded, fromLatest);
+        }
+    }
+
+    /**
+     * Returns a snapshot of the submission counters of a work, or null if the caller has to ask the database.
+     */
+    static Counters getCounters(long workId) {
+        return getCounters(workId, WorkSubmissionIndex::loadCounters);
+    }
+
+    static Counters getCounters(long workId, LongFunction<Counters> loader) {
+        long startGeneration;
+        synchronized (WorkSubmissionIndex.class) {
+            if (!consistentForCurrentThread()) {
+                return null;
+            }
+            Counters cached = counters.get(workId);
+            if (cached != null) {
+                return copyOf(cached);
+            }
+            startGeneration = generation;
+        }
+        Counters loaded = loader.apply(workId);
+        synchronized (WorkSubmissionIndex.class) {
+            if (generation != startGeneration || !consistentForCurrentThread()) {
+                return null;
+            }
+            counters.put(workId, loaded);
+            return copyOf(loaded);
+        }
+    }
+
+    /**
+     * Called for every saved row version, inside the transaction that saves it. A null previouslyPaid means that
+     * this is the first row of the submission.
+     */
+    static synchronized void onSave(PowAndBounty submission, int height, Boolean previouslyPaid) {
+        onSave(submission.getWork_id(), submission.is_pow, submission.isWas_paid(), previouslyPaid);
+        if (!submission.is_pow) {
+            updateStorage(submission.getWork_id(), submission.getId(), height, submission.getSubmitted_storage());
+        }
+    }
+
+    static synchronized void onSave(long workId, boolean isPow, boolean paid, Boolean previouslyPaid) {
+        generation++;
+        if (dirty.get() == null) {
+            dirty.set(Boolean.TRUE);
+            dirtyThreads++;
+            Db.db.registerCallback(transactionListener);
+        }
+        Counters workCounters = counters.get(workId);
+        if (workCounters != null) {
+            if (previouslyPaid == null) {
+                if (isPow) {
+                    workCounters.pows++;
+                } else {
+                    workCounters.bounties++;
+                }
+                if (!paid) {
+                    workCounters.unpaid++;
+                }
+            } else if (previouslyPaid != paid) {
+                workCounters.unpaid += paid ? -1 : 1;
+            }
+        }
+    }
+
+    static synchronized void clear() {
+        generation++;
+        works.clear();
+        totalBytes = 0;
+        counters.clear();
+    }
+
+    static synchronized void updateStorage(long workId, long id, int height, byte[] submittedStorage) {
+        WorkStorage workStorage = works.get(workId);
+        if (workStorage == null) {
+            return;
+        }
+        List<Bounty> bounties = workStorage.bounties;
+        for (int i = bounties.size() - 1; i >= 0; --i) {
+            Bounty old = bounties.get(i);
+            if (old.id == id) {
+                if (old.height == height) {
+                    return; // merged into the existing row, position stays the same
+                }
+                bounties.remove(i);
+                workStorage.bytes -= sizeOf(old);
+                totalBytes -= sizeOf(old);
+                break;
+            }
+        }
+        Bounty bounty = new Bounty(id, height, Convert.byte2int(submittedStorage));
+        // a new row is at the highest height, only bounties of the same block can follow it
+        int position = bounties.size();
+        while (position > 0 && compare(bounties.get(position - 1), bounty) > 0) {
+            position--;
+        }
+        bounties.add(position, bounty);
+        workStorage.bytes += sizeOf(bounty);
+        totalBytes += sizeOf(bounty);
+        evict();
+    }
+
+    private static List<Bounty> loadBounties(long workId) {
+        List<Bounty> loaded = new ArrayList<>();
+        try (DbIterator<PowAndBounty> it = PowAndBounty.getBountiesForStorageIndex(workId)) {
+            for (PowAndBounty bty : it) {
+                loaded.add(new Bounty(bty.getId(), bty.getHeight(), Convert.byte2int(bty.getSubmitted_storage())));
+            }
+        }
+        return loaded;
+    }
+
+    private static Counters loadCounters(long workId) {
+        Counters loaded = new Counters();
+        loaded.pows = PowAndBounty.countSubmissions(workId, true);
+        loaded.bounties = PowAndBounty.countSubmissions(workId, false);
+        loaded.unpaid = PowAndBounty.countUnpaidSubmissions(workId);
+        return loaded;
+    }
+
+    private static boolean consistentForCurrentThread() {
+        return dirtyThreads == 0 || (dirtyThreads == 1 && dirty.get() != null);
+    }
+
+    private static Counters copyOf(Counters c) {
+        Counters copy = new Counters();
+        copy.pows = c.pows;
+        copy.bounties = c.bounties;
+        copy.unpaid = c.unpaid;
+        return copy;
+    }
+
+    private static int[] storageAt(WorkStorage workStorage, int fromLatest) {
+        List<Bounty> bounties = workStorage.bounties;
+        int index = bounties.size() - 1 - fromLatest;
+        if (index < 0) {
+            return null;
+        }
+        return bounties.get(index).storage.clone();
+    }
+
+    // the order of getBountiesForStorageIndex, height and then id as BIGINT
+    private static int compare(Bounty a, Bounty b) {
+        return a.height != b.height ? Integer.compare(a.height, b.height) : Long.compare(a.id, b.id);
+    }
+
+    private static long sizeOf(Bounty bounty) {
+        return BOUNTY_OVERHEAD + 4L * bounty.storage.length;
+    }
+
+    private static void evict() {
+        Iterator<WorkStorage> it = works.values().iterator();
+        while (totalBytes > MAX_BYTES && it.hasNext()) {
+            totalBytes -= it.next().bytes;
+            it.remove();
+        }
+    }
+
+    private WorkSubmissionIndex() {}
+}
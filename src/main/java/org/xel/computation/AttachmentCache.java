@@ -0,0 +1,74 @@
+package org.xel.computation;
+
+import org.xel.Appendix;
+import org.xel.Block;
+import org.xel.Nxt;
+import org.xel.Transaction;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * LRU of reconstructed message chains and decoded attachments, keyed by the id of the transaction carrying the final
+ * chunk. Transaction ids are content hashes, so an entry can never go stale; popped blocks are still dropped to free
+ * the memory early. The cached attachment is a template only, callers always get a fresh copy without any
+ * validation state.
+ */
+final class AttachmentCache {
+
+    static final class Entry {
+        final Appendix.Message[] chain;
+        final IComputationAttachment attachment;
+
+        private Entry(Appendix.Message[] chain, IComputationAttachment attachment) {
+            this.chain = chain;
+            this.attachment = attachment;
+        }
+    }
+
+    private static final int CAPACITY = Math.max(1, Nxt.getIntProperty("nxt.attachmentCacheSize", 2000));
+
+    private static final Map<Long, Entry> cache = new LinkedHashMap<Long, Entry>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            return size() > CAPACITY;
+        }
+    };
+
+    static synchronized Entry get(long transactionId) {
+        return cache.get(transactionId);
+    }
+
+    static synchronized void put(long transactionId, Appendix.Message[] chain, IComputationAttachment attachment) {
+        cache.put(transactionId, new Entry(chain, attachment));
+    }
+
+    static synchronized void invalidate(Block block) {
+        for (Transaction transaction : block.getTransactions()) {
+            cache.remove(transaction.getId());
+        }
+    }
+
+    static synchronized void clear() {
+        cache.clear();
+    }
+
+    private AttachmentCache() {}
+}
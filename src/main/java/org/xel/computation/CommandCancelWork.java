@@ -72,6 +72,11 @@ public class CommandCancelWork extends IComputationAttachment {
         buffer.putLong(this.cancel_work_id);
     }
 
+    @Override
+    IComputationAttachment freshCopy() {
+        return new CommandCancelWork(cancel_work_id);
+    }
+
     @Override
     boolean validate(Transaction transaction) {
         if(transaction.getDeadline()>ComputationConstants.WORK_TRANSACTION_DEADLINE_VALUE) return false;
@@ -140,12 +140,12 @@ public class CommandNewWork extends IComputationAttachment {
                     if (isCompressed(this.sourceCodeCompressed)) {
                         GZIPInputStream gis = new GZIPInputStream(new ByteArrayInputStream(this.sourceCodeCompressed));
                         BufferedReader bufferedReader = new BufferedReader(new InputStreamReader(gis, "UTF-8"));
-                        String outStr = "";
+                        StringBuilder outStr = new StringBuilder();
                         String line;
                         while ((line = bufferedReader.readLine()) != null) {
-                            outStr += line + "\n";
+                            outStr.append(line).append('\n');
                         }
-                        this.sourceCode = outStr.getBytes("UTF-8");
+                        this.sourceCode = outStr.toString().getBytes("UTF-8");
                         if (this.sourceCode.length > MAX_UNCOMPRESSED_WORK_SIZE)
                             this.sourceCode = new byte[0];
                     }
@@ -165,6 +165,25 @@ public class CommandNewWork extends IComputationAttachment {
         }
     }
 
+    // shares the (never modified) source arrays, the storage size is a property of the code and can be kept as well
+    private CommandNewWork(CommandNewWork other) {
+        super();
+        this.cap_number_pow = other.cap_number_pow;
+        this.deadline = other.deadline;
+        this.xelPerPow = other.xelPerPow;
+        this.xelPerBounty = other.xelPerBounty;
+        this.bountiesPerIteration = other.bountiesPerIteration;
+        this.numberOfIterations = other.numberOfIterations;
+        this.sourceCode = other.sourceCode;
+        this.sourceCodeCompressed = other.sourceCodeCompressed;
+        this.storage_size = other.storage_size;
+    }
+
+    @Override
+    IComputationAttachment freshCopy() {
+        return new CommandNewWork(this);
+    }
+
     private boolean isCompressed(final byte[] compressed) {
         return (compressed[0] == (byte) (GZIPInputStream.GZIP_MAGIC)) && (compressed[1] == (byte) (GZIPInputStream.GZIP_MAGIC >> 8));
     }
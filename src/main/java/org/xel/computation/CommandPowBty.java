@@ -12,6 +12,12 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 
 /******************************************************************************
@@ -42,6 +48,9 @@ public class CommandPowBty extends IComputationAttachment {
     private boolean isValid = false;
     private int storage_bucket;
     private int current_round;
+    private ComputationResult speculativeResult;
+    private byte[] speculativeTarget;
+    private int[] speculativeStorage;
 
     public static TimedCacheList validationCache = new TimedCacheList();
 
@@ -178,6 +187,11 @@ public class CommandPowBty extends IComputationAttachment {
 
     }
 
+    @Override
+    IComputationAttachment freshCopy() {
+        return new CommandPowBty(work_id, is_proof_of_work, multiplier, hash, submitted_storage, storage_bucket, current_round, publickey);
+    }
+
     public byte[] getPublickey() {
         return publickey;
     }
@@ -195,35 +209,129 @@ public class CommandPowBty extends IComputationAttachment {
     }
 
     private boolean validatePow(byte[] pubkey, long blockid, long workId, byte[] target){
-        byte[] hash_array = this.getPowHash();
-        byte[] multiplier_array = this.getMultiplier();
+        ComputationResult r = execute(pubkey, blockid, workId, target);
+        return r != null && r.isPow;
+    }
+    private boolean validateBty(byte[] pubkey, long blockid, long workId, byte[] target){
+        ComputationResult r = execute(pubkey, blockid, workId, target);
+        return r != null && r.isBty;
+    }
 
-        Work w = Work.getWorkById(workId);
+    private ComputationResult execute(byte[] pubkey, long blockid, long workId, byte[] target){
         ExecutionEngine e = new ExecutionEngine();
 
         try {
-            ComputationResult r = e.compute(target, pubkey, blockid, multiplier_array, workId, storage_bucket, false);
-            return r.isPow;
+            int[] storage = e.getStorage(workId, storage_bucket);
+            // a result computed ahead of time is only good if the work's state has not moved on since then
+            if(speculativeResult != null && Arrays.equals(target, speculativeTarget) && Arrays.equals(storage, speculativeStorage))
+                return speculativeResult;
+            return e.compute(target, pubkey, blockid, this.getMultiplier(), workId, ExecutionEngine.getEplCode(workId), storage, false);
         } catch (Exception e1) {
-            return false;
+            return null;
         }
     }
-    private boolean validateBty(byte[] pubkey, long blockid, long workId, byte[] target){
-        byte[] hash_array = this.getPowHash();
-        byte[] multiplier_array = this.getMultiplier();
 
-        Work w = Work.getWorkById(workId);
-        ExecutionEngine e = new ExecutionEngine();
+    private static final class PreparedVerification {
+        final CommandPowBty submission;
+        final byte[] target;
+        final int[] storage;
+        final String epl;
+        final long workBlockId;
+
+        PreparedVerification(CommandPowBty submission, byte[] target, int[] storage, String epl, long workBlockId) {
+            this.submission = submission;
+            this.target = target;
+            this.storage = storage;
+            this.epl = epl;
+            this.workBlockId = workBlockId;
+        }
+    }
 
+    /*
+    Looks up everything the code-level checks of the given submissions need and returns the VM runs as tasks which
+    can be executed on any thread; each task returns the number of submissions it verified. The database is only
+    touched here, on the caller's thread. Submissions of the same work are verified as one batch, split into at most
+    `parallelism` parts so a block full of bounties for a single work still uses all threads. The outcome is kept as
+    a speculative result that validate() will pick up later, if the work did not change in between. Submissions that
+    need no VM run right now are skipped, validate() will do them the normal way.
+     */
+    static List<Callable<Integer>> prepareVerifications(List<Pair<Transaction, CommandPowBty>> submissions, int parallelism) {
+        // all submissions come from one block, so they share the target and only the work has to match
+        Map<Long, List<PreparedVerification>> byWork = new LinkedHashMap<>();
+        for (Pair<Transaction, CommandPowBty> p : submissions) {
+            PreparedVerification prepared = p.getElement1().prepareVerification(p.getElement0());
+            if (prepared != null) {
+                byWork.computeIfAbsent(prepared.submission.work_id, id -> new ArrayList<>()).add(prepared);
+            }
+        }
+
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (Map.Entry<Long, List<PreparedVerification>> entry : byWork.entrySet()) {
+            List<PreparedVerification> all = entry.getValue();
+            int batchSize = (all.size() + parallelism - 1) / Math.max(1, parallelism);
+            for (int from = 0; from < all.size(); from += batchSize) {
+                List<PreparedVerification> batch = all.subList(from, Math.min(all.size(), from + batchSize));
+                tasks.add(() -> verifyBatch(entry.getKey(), batch));
+            }
+        }
+        return tasks;
+    }
+
+    private static int verifyBatch(long workId, List<PreparedVerification> batch) {
+        PreparedVerification first = batch.get(0);
+        List<VerificationRequest> requests = new ArrayList<>(batch.size());
+        for (PreparedVerification p : batch) {
+            requests.add(new VerificationRequest(p.submission.publickey, p.submission.multiplier, p.storage));
+        }
+        ComputationResult[] results;
         try {
-            ComputationResult r = e.compute(target, pubkey, blockid, multiplier_array, workId, storage_bucket, false);
-            return r.isBty;
-        } catch (Exception e1) {
-            return false;
+            results = new ExecutionEngine().computeBatch(first.target, first.workBlockId, workId, first.epl, requests, false);
+        } catch (Exception e) {
+            // not a verdict on the submissions, validate() runs each of them on its own
+            return 0;
+        }
+        int verified = 0;
+        for (int i = 0; i < batch.size(); ++i) {
+            if (results[i] == null) {
+                continue; // same as above, only this input failed
+            }
+            PreparedVerification p = batch.get(i);
+            synchronized (p.submission) {
+                p.submission.speculativeTarget = p.target;
+                p.submission.speculativeStorage = p.storage;
+                p.submission.speculativeResult = results[i];
+            }
+            verified++;
+        }
+        return verified;
+    }
+
+    private PreparedVerification prepareVerification(Transaction transaction) {
+        if (validated || this.work_id == 0) return null;
+        Block block = transaction.getBlock();
+        if (block == null || validationCache.has(transaction.getId(), block.getPreviousBlockId())) return null;
+        Work w = Work.getWork(this.work_id);
+        if (w == null || w.isClosed() || w.getCurrentRound() != this.getCurrent_round()) return null;
+
+        try {
+            ExecutionEngine e = new ExecutionEngine();
+            return new PreparedVerification(this, getTargetBytes(block.getPreviousBlockPowTarget()),
+                    e.getStorage(this.work_id, storage_bucket), ExecutionEngine.getEplCode(this.work_id), w.getBlock_id());
+        } catch (Exception e) {
+            return null;
         }
     }
 
-    byte[] integersToBytes(int[] values) throws IOException {
+    private static byte[] getTargetBytes(long lastBlocksTarget) throws IOException {
+        if(lastBlocksTarget==0) lastBlocksTarget = 1;
+        BigInteger myTarget = Scaler.get(lastBlocksTarget);
+        int[] target = Convert.bigintToInts(myTarget,4);
+        // safeguard
+        if(target.length!=4) target = new int[]{0,0,0,0};
+        return integersToBytes(target);
+    }
+
+    static byte[] integersToBytes(int[] values) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         DataOutputStream dos = new DataOutputStream(baos);
         for(int i=0; i < values.length; ++i)
@@ -326,13 +434,9 @@ public class CommandPowBty extends IComputationAttachment {
                     "block: " + transaction.getBlock().getStringId());
         }
 
-        BigInteger myTarget = Scaler.get(lastBlocksTarget);
-        int[] target = Convert.bigintToInts(myTarget,4);
-        // safeguard
-        if(target.length!=4) target = new int[]{0,0,0,0};
         byte[] tgt;
         try {
-            tgt = integersToBytes(target);
+            tgt = getTargetBytes(lastBlocksTarget);
         } catch (IOException e) {
             Logger.logDebugMessage("Work " + String.valueOf(w.getId()) + " due to unhandled exception. You are probably hard-forked on this job, don't worry about it ... it won't affect other jobs.");
             return false;
@@ -367,10 +471,10 @@ public class CommandPowBty extends IComputationAttachment {
             if(this.is_proof_of_work) {
                 if(!lightMode)
                     transaction.itWasAPow();
-                Logger.logDebugMessage("Work " + String.valueOf(w.getId()) + " verification succeeded: pow submission passed all checks. (txid " + transaction.getStringId() + ", valcache size = " + validationCache.itemcnt() + ")");
+                Logger.logDebugMessage("Work " + String.valueOf(w.getId()) + " verification succeeded: pow submission passed all checks. (txid " + transaction.getStringId() + ", valcache size = " + validationCache.itemcnt() + ", hits = " + validationCache.getHits() + ", misses = " + validationCache.getMisses() + ", evictions = " + validationCache.getEvictions() + ")");
             }
             else
-                Logger.logDebugMessage("Work " + String.valueOf(w.getId()) + " verification succeeded: bty submission passed all checks. (txid " + transaction.getStringId() + ", valcache size = " + validationCache.itemcnt() + ")");
+                Logger.logDebugMessage("Work " + String.valueOf(w.getId()) + " verification succeeded: bty submission passed all checks. (txid " + transaction.getStringId() + ", valcache size = " + validationCache.itemcnt() + ", hits = " + validationCache.getHits() + ", misses = " + validationCache.getMisses() + ", evictions = " + validationCache.getEvictions() + ")");
 
 
         }
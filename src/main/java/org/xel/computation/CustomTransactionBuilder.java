@@ -35,21 +35,12 @@ public class CustomTransactionBuilder {
 
     public final static Pair<JSONStreamAware, String> createTransaction(Appendix.Message work_rel_message, String secretPhrase, String referencedTransactionFullHash, int deadline) throws NxtException {
 
-        Appendix.Message prunablePlainMessage = work_rel_message;
-
         if (secretPhrase == null) {
             throw new NxtException.NotValidException("No passphrase given");
         }
 
         JSONObject response = new JSONObject();
-        byte[] publicKey = Crypto.getPublicKey(secretPhrase);
-
-        Transaction.Builder builder = Nxt.newTransactionBuilder(publicKey, 0, 0,
-                (short)deadline, Attachment.ARBITRARY_MESSAGE).referencedTransactionFullHash(referencedTransactionFullHash).recipientId(WORK_MESSAGE_RECEIVER_ACCOUNT);
-
-        builder.appendix(prunablePlainMessage);
-
-        Transaction transaction = builder.buildComputation(secretPhrase, 0);
+        Transaction transaction = buildTransaction(work_rel_message, secretPhrase, Crypto.getPublicKey(secretPhrase), referencedTransactionFullHash, deadline);
 
         JSONObject transactionJSON = JSONData.unconfirmedTransaction(transaction);
         response.put("transactionJSON", transactionJSON);
@@ -63,6 +54,21 @@ public class CustomTransactionBuilder {
         return new Pair<>(transactionJSON, transaction.getFullHash());
     }
 
+    // signed transaction object, for callers that already know the public key and do not need any JSON
+    public final static Transaction buildTransaction(Appendix.Message work_rel_message, String secretPhrase, byte[] publicKey, String referencedTransactionFullHash, int deadline) throws NxtException {
+
+        if (secretPhrase == null) {
+            throw new NxtException.NotValidException("No passphrase given");
+        }
+
+        Transaction.Builder builder = Nxt.newTransactionBuilder(publicKey, 0, 0,
+                (short)deadline, Attachment.ARBITRARY_MESSAGE).referencedTransactionFullHash(referencedTransactionFullHash).recipientId(WORK_MESSAGE_RECEIVER_ACCOUNT);
+
+        builder.appendix(work_rel_message);
+
+        return builder.buildComputation(secretPhrase, 0);
+    }
+
     public final static Pair<JSONStreamAware, String> createTransactionPubkey(Appendix.PrunablePlainMessage work_rel_message, byte[] publicKey, int deadline) throws NxtException {
         return CustomTransactionBuilder.createTransactionPubkey(work_rel_message, publicKey, null, deadline);
     }
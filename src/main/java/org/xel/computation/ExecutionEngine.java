@@ -4,8 +4,11 @@ import org.xel.*;
 import org.xel.util.Logger;
 
 import java.io.*;
+import java.util.List;
 import java.util.Properties;
 import java.util.Scanner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static org.xel.Nxt.NXT_DEFAULT_TESTVM_PROPERTIES;
 import static org.xel.Nxt.loadProperties;
@@ -13,8 +16,22 @@ import static org.xel.Nxt.loadProperties;
 public class ExecutionEngine {
 
     private static final Properties defaultProperties = new Properties();
+    private static final String DEFAULT_VERIFIER_SERVER_COMMAND = String.format("./xel_miner --verify-server --test-wcet-main %d --test-wcet-verify %d --deadswitch %d --test-limit-storage %d", ComputationConstants.MAX_MAIN_WCET, ComputationConstants.MAX_VERIFY_WCET, ComputationConstants.MAX_EXECUTION_TIME_IN_S, ComputationConstants.MAX_STORAGE_SIZE);
     private final static char[] hexArray = "0123456789ABCDEF".toCharArray();
     static boolean dda = getBooleanProperty("nxt.dump_pow_info");
+    private static volatile Verifier verifier;
+
+    // kills verifier processes that outlive their deadswitch
+    static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "verifier watchdog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static void kill(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
 
     public static byte[] getMaximumTargetForTesting() {
         byte[] target = new byte[16];
@@ -65,6 +82,33 @@ public class ExecutionEngine {
     }
 
 
+    public static Verifier getVerifier() {
+        if (verifier == null) {
+            synchronized (ExecutionEngine.class) {
+                if (verifier == null) {
+                    int poolSize = Nxt.getIntProperty("nxt.verifierPoolSize", 0);
+                    if (poolSize > 0)
+                        verifier = new VerifierPool(poolSize, Nxt.getStringProperty("nxt.verifierServerCommand", DEFAULT_VERIFIER_SERVER_COMMAND), new ProcessVerifier());
+                    else
+                        verifier = new ProcessVerifier();
+                }
+            }
+        }
+        return verifier;
+    }
+
+    // allows plugging in a different backend, e.g. an in-JVM ElasticPL interpreter
+    public static synchronized void setVerifier(Verifier newVerifier) {
+        if (verifier != null)
+            verifier.shutdown();
+        verifier = newVerifier;
+    }
+
+    public static synchronized void shutdown() {
+        if (verifier != null)
+            verifier.shutdown();
+    }
+
     public static String getEplCode(String filename) throws FileNotFoundException {
         String content = null;
         content = new Scanner(new File(filename)).useDelimiter("\\Z").next();
@@ -111,82 +155,12 @@ public class ExecutionEngine {
         else
             storage = getStorage(workId, storage_idx);
 
-        FileWriter fileWriter = new FileWriter("work/code.epl");
-        PrintWriter printWriter = new PrintWriter(fileWriter);
-        printWriter.print(epl);
-        printWriter.flush();
-        printWriter.close();
-
-        ComputationResult r = new ComputationResult();
-
-        String cmd = "";
-        if(!nocache)
-            cmd = String.format("./xel_miner --test-target %s --test-publickey %s --test-multiplicator %s --test-block %d --test-work %d --verify-only --test-wcet-main %d --test-wcet-verify %d --deadswitch %d --test-stdin --test-limit-storage %d --test-vm code.epl", bytesToHex(target), bytesToHex(publicKey), bytesToHex(multiplicator), blockId, workId, ComputationConstants.MAX_MAIN_WCET, ComputationConstants.MAX_VERIFY_WCET, ComputationConstants.MAX_EXECUTION_TIME_IN_S, ComputationConstants.MAX_STORAGE_SIZE);
-        else
-            cmd = String.format("./xel_miner --test-avoidcache --test-target %s --test-publickey %s --test-multiplicator %s --test-block %d --test-work %d --verify-only --test-wcet-main %d --test-wcet-verify %d --deadswitch %d --test-stdin --test-limit-storage %d --test-vm code.epl", bytesToHex(target), bytesToHex(publicKey), bytesToHex(multiplicator), blockId, workId, ComputationConstants.MAX_MAIN_WCET, ComputationConstants.MAX_VERIFY_WCET, ComputationConstants.MAX_EXECUTION_TIME_IN_S, ComputationConstants.MAX_STORAGE_SIZE);
-
-        Logger.logDebugMessage(cmd);
-        Process process=Runtime.getRuntime().exec(cmd,
-                null, new File("./work/"));
-        BufferedReader reader =
-                new BufferedReader(new InputStreamReader(process.getInputStream()));
-        OutputStream stdin = process.getOutputStream(); // <- Eh?
-        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(stdin));
-
-        if(storage.length>0) {
-            String longstoryshort = "";
-            // now shoot out storage via STDIN
-            for (int i = 0; i < storage.length; ++i) {
-                longstoryshort += Integer.toUnsignedString(storage[i]) + "\n";
-            }
-            longstoryshort += "\n";
-            writer.write(longstoryshort);
-            writer.flush();
-            //Logger.logInfoMessage(longstoryshort.substring(0, Math.min(longstoryshort.length()-1, 10000)));
-
-        }
-
-
-        String line;
-        process.waitFor();
-
-        String fullOutp = "";
-        while ( (line = reader.readLine()) != null) {
-            line = line.replaceAll("\\[\\d+m", "").trim();
-
-            if(line.contains("ERROR") || line.contains("Error")) {
-                if(dda) {
-                    Logger.logErrorMessage(cmd);
-                    Logger.logErrorMessage(fullOutp);
-                }
-                throw new IOException("EPL code produced error: " + line);
-            }
-            if(line.contains("DEBUG: POW Found:")){
-                Boolean res = Boolean.parseBoolean(line.substring(line.lastIndexOf(":")+2));
-                r.isPow = res;
-            }
-            if(line.contains("DEBUG: Bounty Found:")){
-                Boolean res = Boolean.parseBoolean(line.substring(line.lastIndexOf(":")+2));
-                r.isBty = res;
-            }
-            if(line.contains("DEBUG: storage size:")){
-                Integer res = Integer.parseInt(line.substring(line.lastIndexOf(":")+2));
-                r.storage_size = res;
-            }
-            if(line.contains("DEBUG: POW Hash:")){
-                byte[] res = hexStringToByteArray(line.substring(line.lastIndexOf(":")+2,line.lastIndexOf(":")+2+32));
-                r.powHash = res;
-            }
-            fullOutp += line + "\n";
-        }
-
-        if(process.exitValue()!=0) {
-                System.err.println(cmd);
-                System.err.println(fullOutp);
-            throw new IOException("EPL code exited with error code.");
-        }
+        return compute(target, publicKey, blockId, multiplicator, workId, epl, storage, nocache);
+    }
 
-        //Logger.logDebugMessage(fullOutp);
+    // does not touch the database, so it may be called from any thread once code and storage have been looked up
+    public ComputationResult compute(final byte[] target, final byte[] publicKey, final long blockId, final byte[] multiplicator, final long workId, String epl, final int[] storage, boolean nocache) throws Exception {
+        ComputationResult r = getVerifier().compute(target, publicKey, blockId, multiplicator, workId, epl, storage, nocache);
 
         if(dda) {
             System.out.println("Result is POW: " + r.isPow);
@@ -197,5 +171,10 @@ public class ExecutionEngine {
         return r;
     }
 
+    // many inputs of one work in one go, see Verifier.computeBatch
+    public ComputationResult[] computeBatch(final byte[] target, final long blockId, final long workId, String epl, List<VerificationRequest> requests, boolean nocache) throws Exception {
+        return getVerifier().computeBatch(target, blockId, workId, epl, requests, nocache);
+    }
+
 
 }
@@ -51,6 +51,9 @@ public abstract class IComputationAttachment  {
 
     abstract void putMyBytes(ByteBuffer buffer);
 
+    // same content, but none of the validation state
+    abstract IComputationAttachment freshCopy();
+
     abstract boolean validate(Transaction transaction) throws NxtException.ValidationException;
     abstract void apply(Transaction transaction);
 
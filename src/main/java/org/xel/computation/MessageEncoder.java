@@ -1,6 +1,7 @@
 package org.xel.computation;
 
 import org.xel.*;
+import org.xel.crypto.Crypto;
 import org.xel.db.DbIterator;
 import org.xel.http.GetLastBlockId;
 import org.xel.http.ParameterException;
@@ -8,6 +9,7 @@ import org.xel.http.ParameterParser;
 import org.xel.peer.Peers;
 import org.xel.util.Convert;
 import org.xel.util.Logger;
+import org.xel.util.ThreadPool;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
@@ -16,6 +18,11 @@ import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /******************************************************************************
  * Copyright © 2017 The XEL Core Developers.                                  *
@@ -44,18 +51,28 @@ public class MessageEncoder {
 
 
     public static boolean useComputationEngine = Nxt.getBooleanProperty("nxt.enableComputationEngine");
-    public static Map<Long, Integer> stupidLimiterBty = new HashMap<Long, Integer>();
-    public static Map<Long, Integer> stupidLimiterPow = new HashMap<Long, Integer>();
-
-    public static synchronized CommandPowBty hasPowAndBountyContent(Transaction t){
+    private static final int VERIFICATION_THREADS = Math.max(1, Nxt.getIntProperty("nxt.verificationThreads", Runtime.getRuntime().availableProcessors()));
+    private static final ExecutorService verificationService = Executors.newFixedThreadPool(VERIFICATION_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "verification");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // prevalidations of API submissions get their own threads, so they never hold up the verification of a block
+    private static final int API_VERIFICATION_THREADS = Math.max(1, Nxt.getIntProperty("nxt.apiVerificationThreads", Math.max(1, Runtime.getRuntime().availableProcessors() / 2)));
+    private static final ExecutorService apiVerificationService = Executors.newFixedThreadPool(API_VERIFICATION_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "api verification");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final int POW_LIMIT_PER_BLOCK = 25;
+    private static final SubmissionLimiter limiter = new SubmissionLimiter();
+
+    public static CommandPowBty hasPowAndBountyContent(Transaction t){
         Appendix.Message m = t.getMessage();
         if(m==null ) return null;
 
         try {
-            Appendix.Message[] reconstructedChain = MessageEncoder.extractMessages(t);
-
-            // Allow the decoding of the attachment
-            IComputationAttachment att = MessageEncoder.decodeAttachment(reconstructedChain);
+            IComputationAttachment att = MessageEncoder.decode(t);
             if(att == null) return null;
 
             if(att instanceof CommandPowBty)
@@ -68,7 +85,7 @@ public class MessageEncoder {
         return null;
     }
 
-    public static synchronized boolean limitHit(Transaction transaction, CommandPowBty c){
+    public static boolean limitHit(Transaction transaction, CommandPowBty c){
 
         // basic simple test
         long wid = c.getWork_id();
@@ -76,37 +93,20 @@ public class MessageEncoder {
         if (w == null) return false;
         if (w.isClosed() == true) return false;
 
-        //Logger.logDebugMessage("Checking stupidLimiters for work " + c.getWork_id() + ": pow = " + ((stupidLimiterPow.containsKey(w.getId())==false)?0:stupidLimiterPow.get(w.getId())) + " (of " + w.getCap_number_pow() + "), bty = " + ((stupidLimiterBty.containsKey(w.getId())==false)?0:stupidLimiterBty.get(w.getId())) + " (of " + w.getBounty_limit_per_iteration() + ")");
-        if(c.isIs_proof_of_work()){
-            if(stupidLimiterPow.containsKey(w.getId())==false) return false;
-            return stupidLimiterPow.get(w.getId())>=25;
-        }else{
-            if(stupidLimiterBty.containsKey(w.getId())==false) return false;
-            return stupidLimiterBty.get(w.getId())>=w.getBounty_limit_per_iteration();
-        }
+        int limit = (c.isIs_proof_of_work()) ? POW_LIMIT_PER_BLOCK : w.getBounty_limit_per_iteration();
+        return limiter.isFull(wid, c.isIs_proof_of_work(), limit, Nxt.getTemporaryComputationBlockchain().getHeight());
     }
 
-    public static synchronized void preValidate(Transaction transaction, CommandPowBty c) throws NxtException.NotCurrentlyValidException {
-
+    public static void preValidate(Transaction transaction, CommandPowBty c) throws NxtException.NotCurrentlyValidException {
 
+        // the VM run happens without any lock, every verification has its own sandbox so they can run side by side
         boolean ret = c.validate(transaction, true); // use light mode
         if(!ret) throw new NxtException.NotCurrentlyValidException("The submitted " + ((c.isIs_proof_of_work())?"POW":"BOUNTY") + " was simply wrong");
 
         // looks good enough to keep it for now, real validation will be performed later
-        if(c.isIs_proof_of_work()){
-            if(stupidLimiterPow.containsKey(c.getWork_id()))
-                stupidLimiterPow.put(c.getWork_id(), stupidLimiterPow.get(c.getWork_id())+1);
-            else
-                stupidLimiterPow.put(c.getWork_id(), 1);
-        } else{
-            if(stupidLimiterBty.containsKey(c.getWork_id()))
-                stupidLimiterBty.put(c.getWork_id(), stupidLimiterBty.get(c.getWork_id())+1);
-            else
-                stupidLimiterBty.put(c.getWork_id(), 1);
-        }
-
-        Logger.logDebugMessage("(PREVALIDATION PASSED) for submitted " + ((c.isIs_proof_of_work())?"POW":"BOUNTY") + " (limiter bty=" + stupidLimiterBty.get(c.getWork_id()) + ", pow = " + stupidLimiterPow.get(c.getWork_id()));
-
+        int height = Nxt.getTemporaryComputationBlockchain().getHeight();
+        int count = limiter.record(c.getWork_id(), c.isIs_proof_of_work(), height);
+        Logger.logDebugMessage("(PREVALIDATION PASSED) for submitted " + ((c.isIs_proof_of_work())?"POW":"BOUNTY") + " (" + count + " for work " + c.getWork_id() + " at height " + height + ")");
     }
 
 
@@ -198,45 +198,19 @@ public class MessageEncoder {
         int mintime = Integer.MAX_VALUE;
         int maxtime = 0;
 
+        long verificationStart = System.currentTimeMillis();
 
-
-        // first all pow and else
-        // in second round the bounties
-
+        // decode everything once, in transaction order
+        List<Pair<Transaction, IComputationAttachment>> decoded = new ArrayList<>();
         for(Transaction t : block.getTransactions()){
-
-
-
             Appendix.Message m = t.getMessage();
             if(m==null) continue;
 
-
             if(MessageEncoder.checkMessageForPiggyback(m, true, false)){
                 try {
-                    Appendix.Message[] reconstructedChain = MessageEncoder.extractMessages(t);
-
-                    // Allow the decoding of the attachment
-                    IComputationAttachment att = MessageEncoder.decodeAttachment(reconstructedChain);
+                    IComputationAttachment att = MessageEncoder.decode(t);
                     if(att == null) continue;
-
-                    if(att instanceof CommandPowBty) {
-                        if (((CommandPowBty) att).isIs_proof_of_work())
-                            att.apply(t);
-                        else
-                            continue;
-                        if (((CommandPowBty) att).isIs_proof_of_work() && ((CommandPowBty) att).isValid()) {
-                            if (t.getTimestamp() > maxtime) maxtime = t.getTimestamp();
-                            if (t.getTimestamp() < mintime) mintime = t.getTimestamp();
-                            powCounter++;
-                        }else{
-                            ((CommandPowBty) att).setValidated(false);
-                            att.validate(t);
-                        }
-                    }else{
-                        att.apply(t);
-                    }
-
-
+                    decoded.add(new Pair<>(t, att));
                 } catch (Exception e) {
                     // generous catch, do not allow anything to cripple the blockchain integrity
                     e.printStackTrace();
@@ -245,40 +219,63 @@ public class MessageEncoder {
             }
         }
 
-        for(Transaction t : block.getTransactions()){
-
-
-            Appendix.Message m = t.getMessage();
-            if(m==null) continue;
-
-
-
-            if(MessageEncoder.checkMessageForPiggyback(m, true, false)){
-                try {
-                    Appendix.Message[] reconstructedChain = MessageEncoder.extractMessages(t);
+        // first all pow and else
+        // in second round the bounties
+        // the code-level checks of each round run concurrently up front, the effects are still applied one by one in
+        // transaction order so the outcome is exactly the same as with a sequential run
 
-                    // Allow the decoding of the attachment
-                    IComputationAttachment att = MessageEncoder.decodeAttachment(reconstructedChain);
-                    if(att == null) continue;
+        int powVerified = verifyConcurrently(decoded, true);
 
-                    if(att instanceof CommandPowBty) {
-                        if (((CommandPowBty) att).isIs_proof_of_work()) continue;
+        for(Pair<Transaction, IComputationAttachment> p : decoded){
+            Transaction t = p.getElement0();
+            IComputationAttachment att = p.getElement1();
+            try {
+                if(att instanceof CommandPowBty) {
+                    if (((CommandPowBty) att).isIs_proof_of_work())
                         att.apply(t);
+                    else
+                        continue;
+                    if (((CommandPowBty) att).isIs_proof_of_work() && ((CommandPowBty) att).isValid()) {
+                        if (t.getTimestamp() > maxtime) maxtime = t.getTimestamp();
+                        if (t.getTimestamp() < mintime) mintime = t.getTimestamp();
+                        powCounter++;
+                    }else{
+                        ((CommandPowBty) att).setValidated(false);
+                        att.validate(t);
                     }
+                }else{
+                    att.apply(t);
+                }
+            } catch (Exception e) {
+                // generous catch, do not allow anything to cripple the blockchain integrity
+                e.printStackTrace();
+                continue;
+            }
+        }
 
+        int btyVerified = verifyConcurrently(decoded, false);
 
-
-                } catch (Exception e) {
-                    // generous catch, do not allow anything to cripple the blockchain integrity
-                    e.printStackTrace();
-                    continue;
+        for(Pair<Transaction, IComputationAttachment> p : decoded){
+            Transaction t = p.getElement0();
+            IComputationAttachment att = p.getElement1();
+            try {
+                if(att instanceof CommandPowBty) {
+                    if (((CommandPowBty) att).isIs_proof_of_work()) continue;
+                    att.apply(t);
                 }
+            } catch (Exception e) {
+                // generous catch, do not allow anything to cripple the blockchain integrity
+                e.printStackTrace();
+                continue;
             }
         }
+
+        if(!decoded.isEmpty())
+            Logger.logDebugMessage("Processed " + decoded.size() + " computation messages of block " + block.getStringId() + " in " + (System.currentTimeMillis() - verificationStart) + " ms (" + powVerified + " pow and " + btyVerified + " bounty checks run on " + VERIFICATION_THREADS + " threads)");
+
         block.calculatePowTarget(powCounter, mintime, maxtime);
-        // and clean the stupidLimiters
-        stupidLimiterPow.clear();
-        stupidLimiterBty.clear();
+        // and start counting submissions for the next block
+        limiter.reset(block.getHeight());
 
         // Now clear all jobs that have not seen enough payments in the past
         // Rule is, if more than 55 POW/BTY are open, we timeout this job immedeately
@@ -295,6 +292,40 @@ public class MessageEncoder {
 
 
 
+    // Runs the code-level checks of all pow (or all bounty) submissions of a block on the verification pool and
+    // waits for them. The results are parked in the attachments, nothing is applied here.
+    private static int verifyConcurrently(List<Pair<Transaction, IComputationAttachment>> decoded, boolean pow){
+        List<Pair<Transaction, CommandPowBty>> submissions = new ArrayList<>();
+        for(Pair<Transaction, IComputationAttachment> p : decoded){
+            if(!(p.getElement1() instanceof CommandPowBty)) continue;
+            CommandPowBty c = (CommandPowBty) p.getElement1();
+            if(c.isIs_proof_of_work() != pow) continue;
+            submissions.add(new Pair<>(p.getElement0(), c));
+        }
+        List<Future<Integer>> pending = new ArrayList<>();
+        for(Callable<Integer> task : CommandPowBty.prepareVerifications(submissions, VERIFICATION_THREADS)){
+            pending.add(verificationService.submit(task));
+        }
+        int verified = 0;
+        for(Future<Integer> f : pending){
+            try {
+                verified += f.get();
+            } catch (InterruptedException e) {
+                // whatever did not finish is simply verified again when applied
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                // same here
+            }
+        }
+        return verified;
+    }
+
+    public static void shutdown(){
+        ThreadPool.shutdownExecutor("verificationService", verificationService, 10);
+        ThreadPool.shutdownExecutor("apiVerificationService", apiVerificationService, 10);
+    }
+
     public static void init(){
         if(Nxt.getBooleanProperty("nxt.enableComputationEngine")) {
             Nxt.getBlockchainProcessor().addListener(block -> {
@@ -307,6 +338,9 @@ public class MessageEncoder {
                 GetLastBlockId.lastBlockIdComp = block.getId();
                 processBlockInternal(block);
             }, TemporaryComputationBlockchainProcessorImpl.Event.AFTER_BLOCK_APPLY_COMPUTATION);
+            Nxt.getTemporaryComputationBlockchainProcessor().addListener(AttachmentCache::invalidate, TemporaryComputationBlockchainProcessorImpl.Event.BLOCK_POPPED_COMPUTATION);
+            Nxt.getTemporaryComputationBlockchainProcessor().addListener(block -> limiter.reset(block.getHeight() - 1), TemporaryComputationBlockchainProcessorImpl.Event.BLOCK_POPPED_COMPUTATION);
+            Nxt.getTemporaryComputationBlockchainProcessor().addListener(block -> AttachmentCache.clear(), TemporaryComputationBlockchainProcessorImpl.Event.RESCAN_BEGIN_COMPUTATION);
         }
     }
 
@@ -323,6 +357,75 @@ public class MessageEncoder {
         return MessageEncoder.pushThemAll(individual_txs);
     }
 
+    /*
+    Builds, signs and prevalidates the transaction chains of many submissions in parallel and broadcasts all chains
+    that passed as one batch. Returns one entry per submission: the id of the last transaction of its chain, or 0 and
+    the reason it was rejected.
+     */
+    public static List<Pair<Long, String>> pushAll(List<? extends IComputationAttachment> works, String secretPhrase, int deadline) {
+        byte[] publicKey = Crypto.getPublicKey(secretPhrase);
+        List<Callable<List<Transaction>>> tasks = new ArrayList<>(works.size());
+        for(IComputationAttachment work : works){
+            tasks.add(() -> {
+                List<Transaction> chain = buildTransactions(work, secretPhrase, publicKey, deadline);
+                for(Transaction t : chain){
+                    t.getType().postponeForNow(t);
+                }
+                return chain;
+            });
+        }
+
+        List<Pair<Long, String>> results = new ArrayList<>(works.size());
+        List<List<Transaction>> chains = new ArrayList<>(works.size());
+        List<Transaction> toBroadcast = new ArrayList<>();
+        try {
+            for(Future<List<Transaction>> f : apiVerificationService.invokeAll(tasks)){
+                try {
+                    List<Transaction> chain = f.get();
+                    chains.add(chain);
+                    toBroadcast.addAll(chain);
+                    results.add(null);
+                } catch (ExecutionException e) {
+                    chains.add(null);
+                    results.add(new Pair<>(0L, String.valueOf(e.getCause().getMessage())));
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            List<Pair<Long, String>> interrupted = new ArrayList<>(works.size());
+            for(int i=0;i<works.size();++i) interrupted.add(new Pair<>(0L, "Interrupted"));
+            return interrupted;
+        }
+
+        List<NxtException.ValidationException> errors = TemporaryComputationTransactionProcessorImpl.getInstance().broadcast(toBroadcast);
+        int next = 0;
+        for(int i=0;i<chains.size();++i){
+            List<Transaction> chain = chains.get(i);
+            if(chain == null) continue;
+            String error = null;
+            for(Transaction t : chain){
+                NxtException.ValidationException e = errors.get(next++);
+                if(e != null && error == null) error = e.getMessage();
+            }
+            long last = chain.isEmpty() ? 0 : chain.get(chain.size() - 1).getId();
+            results.set(i, (error == null) ? new Pair<>(last, null) : new Pair<>(0L, error));
+        }
+        return results;
+    }
+
+    // same chain as encodeTransactions + pushThemAll would build, but without going through JSON
+    public static List<Transaction> buildTransactions(IComputationAttachment work, String secretPhrase, byte[] publicKey, int deadline) throws NxtException {
+        Appendix.Message[] msgs = MessageEncoder.encodeAttachment(work);
+        List<Transaction> chain = new ArrayList<>(msgs.length);
+        String previousHash = null;
+        for(int i=msgs.length-1; i>=0; --i){
+            Transaction t = CustomTransactionBuilder.buildTransaction(msgs[i], secretPhrase, publicKey, previousHash, deadline);
+            previousHash = t.getFullHash();
+            chain.add(t);
+        }
+        return chain;
+    }
+
     public static JSONStreamAware[] encodeOnly(IComputationAttachment work, byte[] pubkey, int deadline) throws NxtException, IOException {
         Appendix.Message[] messages = MessageEncoder.encodeAttachment(work);
         JSONStreamAware[] individual_txs = MessageEncoder.encodeTransactions(messages, pubkey, deadline);
@@ -334,8 +437,28 @@ public class MessageEncoder {
         return individual_txs;
     }
 
+    // extractMessages + decodeAttachment, served from the attachment cache whenever possible
+    public static IComputationAttachment decode(Transaction t) throws NxtException.ValidationException {
+        if(t == null) throw new NxtException.NotValidException("This transaction is not a valid work-encoder");
+        AttachmentCache.Entry cached = AttachmentCache.get(t.getId());
+        IComputationAttachment att;
+        if(cached != null) {
+            att = cached.attachment;
+        } else {
+            Appendix.Message[] reconstructedChain = extractMessages(t);
+            att = decodeAttachment(reconstructedChain);
+            AttachmentCache.put(t.getId(), reconstructedChain, att);
+        }
+        return (att == null) ? null : att.freshCopy();
+    }
+
     public static Appendix.Message[] extractMessages(Transaction _t) throws NxtException.ValidationException {
 
+        if(_t != null) {
+            AttachmentCache.Entry cached = AttachmentCache.get(_t.getId());
+            if(cached != null) return cached.chain.clone();
+        }
+
         Transaction t = _t;
 
         ArrayList<Appendix.Message> arl = new ArrayList<>();
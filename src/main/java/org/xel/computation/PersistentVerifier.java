@@ -0,0 +1,256 @@
+package org.xel.computation;
+
+import org.xel.crypto.Crypto;
+import org.xel.util.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+/**
+ * A long-lived xel_miner process that is fed verification requests over stdin/stdout instead of being forked for
+ * each of them.
+ *
+ * Every message in both directions is framed as a 4-byte big-endian length followed by the payload, whose first
+ * byte is the message type:
+ *   'L' sha256(code)[32] code[...]                          load (compile) a program, answered by an empty 'K'
+ *   'V' nocache[1] target pubkey multiplicator (each        verify one input against the loaded program, answered by
+ *       prefixed by a 2-byte length) block[8] work[8]       'R' isPow[1] isBty[1] storage_size[4] powHashLen[2] powHash
+ *       storageLen[4] storage[4*storageLen]
+ *   'B' nocache[1] target[2+n] block[8] work[8]            verify many inputs against the loaded program, answered
+ *       storageCount[4] (storageLen[4] storage[...])*      by 'S' count[4] followed by, per input, ok[1] and (if ok)
+ *       count[4] (pubkey[2+n] multiplicator[2+n]           the body of an 'R' answer; equal storages are sent once
+ *       storageIndex[4])*
+ * Any request may be answered with 'E' message[...] if the program itself fails (syntax, WCET, runtime error).
+ *
+ * The program is only re-sent when its hash differs from the one the process compiled last, so as long as requests
+ * for the same work are routed to the same worker the compiled program stays warm.
+ */
+public class PersistentVerifier implements Verifier {
+
+    /**
+     * The program was rejected or failed inside the VM. Unlike any other IOException this does not mean the worker
+     * process is broken.
+     */
+    public static class ProgramException extends IOException {
+        ProgramException(String message) {
+            super(message);
+        }
+    }
+
+    private final String command;
+    private final int id;
+    private volatile Process process;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private byte[] loadedCodeHash;
+
+    PersistentVerifier(String command, int id) {
+        this.command = command;
+        this.id = id;
+    }
+
+    @Override
+    public synchronized ComputationResult compute(final byte[] target, final byte[] publicKey, final long blockId, final byte[] multiplicator, final long workId, String epl, int[] storage, boolean nocache) throws Exception {
+        if (process == null || !process.isAlive()) {
+            start();
+        }
+        // the deadswitch of the miner only covers the VM itself, this one also covers a hung or wedged process
+        ScheduledFuture<?> timeout = ExecutionEngine.watchdog.schedule(this::destroyProcess, 2 * ComputationConstants.MAX_EXECUTION_TIME_IN_S, TimeUnit.SECONDS);
+        try {
+            ensureLoaded(epl);
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(64 + storage.length * 4);
+            DataOutputStream request = new DataOutputStream(baos);
+            request.writeByte(nocache ? 1 : 0);
+            writeShortPrefixed(request, target);
+            writeShortPrefixed(request, publicKey);
+            writeShortPrefixed(request, multiplicator);
+            request.writeLong(blockId);
+            request.writeLong(workId);
+            writeStorage(request, storage);
+            writeFrame('V', baos.toByteArray());
+
+            return readResult(readFrame('R'));
+        } catch (ProgramException e) {
+            throw e;
+        } catch (IOException e) {
+            kill();
+            throw e;
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    @Override
+    public synchronized ComputationResult[] computeBatch(byte[] target, long blockId, long workId, String epl, List<VerificationRequest> requests, boolean nocache) throws Exception {
+        if (process == null || !process.isAlive()) {
+            start();
+        }
+        // the miner enforces the execution limit per input, so the whole batch may take that long for each of them
+        ScheduledFuture<?> timeout = ExecutionEngine.watchdog.schedule(this::destroyProcess, 2L * ComputationConstants.MAX_EXECUTION_TIME_IN_S * Math.max(1, requests.size()), TimeUnit.SECONDS);
+        try {
+            ensureLoaded(epl);
+
+            List<int[]> storages = new ArrayList<>();
+            int[] storageIndex = new int[requests.size()];
+            for (int i = 0; i < storageIndex.length; ++i) {
+                int[] storage = requests.get(i).storage;
+                int found = -1;
+                for (int j = 0; j < storages.size() && found < 0; ++j) {
+                    if (Arrays.equals(storages.get(j), storage)) found = j;
+                }
+                if (found < 0) {
+                    found = storages.size();
+                    storages.add(storage);
+                }
+                storageIndex[i] = found;
+            }
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream(64 + requests.size() * 128);
+            DataOutputStream request = new DataOutputStream(baos);
+            request.writeByte(nocache ? 1 : 0);
+            writeShortPrefixed(request, target);
+            request.writeLong(blockId);
+            request.writeLong(workId);
+            request.writeInt(storages.size());
+            for (int[] storage : storages) {
+                writeStorage(request, storage);
+            }
+            request.writeInt(requests.size());
+            for (int i = 0; i < storageIndex.length; ++i) {
+                writeShortPrefixed(request, requests.get(i).publicKey);
+                writeShortPrefixed(request, requests.get(i).multiplicator);
+                request.writeInt(storageIndex[i]);
+            }
+            writeFrame('B', baos.toByteArray());
+
+            DataInputStream response = readFrame('S');
+            int count = response.readInt();
+            if (count != requests.size()) {
+                throw new IOException("Verifier worker " + id + " answered " + count + " of " + requests.size() + " batch requests");
+            }
+            ComputationResult[] results = new ComputationResult[count];
+            for (int i = 0; i < count; ++i) {
+                results[i] = response.readBoolean() ? readResult(response) : null;
+            }
+            return results;
+        } catch (ProgramException e) {
+            throw e;
+        } catch (IOException e) {
+            kill();
+            throw e;
+        } finally {
+            timeout.cancel(false);
+        }
+    }
+
+    private void ensureLoaded(String epl) throws IOException {
+        byte[] code = epl.getBytes(StandardCharsets.UTF_8);
+        byte[] codeHash = Crypto.sha256().digest(code);
+        if (!Arrays.equals(codeHash, loadedCodeHash)) {
+            loadedCodeHash = null;
+            writeFrame('L', codeHash, code);
+            readFrame('K');
+            loadedCodeHash = codeHash;
+        }
+    }
+
+    private static void writeStorage(DataOutputStream stream, int[] storage) throws IOException {
+        stream.writeInt(storage.length);
+        for (int value : storage) {
+            stream.writeInt(value);
+        }
+    }
+
+    private static ComputationResult readResult(DataInputStream response) throws IOException {
+        ComputationResult r = new ComputationResult();
+        r.isPow = response.readBoolean();
+        r.isBty = response.readBoolean();
+        r.storage_size = response.readInt();
+        r.powHash = new byte[response.readUnsignedShort()];
+        response.readFully(r.powHash);
+        return r;
+    }
+
+    private void start() throws IOException {
+        kill();
+        Logger.logDebugMessage("Starting verifier worker " + id + ": " + command);
+        process = new ProcessBuilder(command.split(" ")).directory(new File("./work/"))
+                .redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    }
+
+    private void kill() {
+        destroyProcess();
+        process = null;
+        loadedCodeHash = null;
+    }
+
+    private void destroyProcess() {
+        Process p = process;
+        if (p != null) {
+            ExecutionEngine.kill(p);
+        }
+    }
+
+    private void writeFrame(char type, byte[]... parts) throws IOException {
+        int length = 1;
+        for (byte[] part : parts) {
+            length += part.length;
+        }
+        out.writeInt(length);
+        out.writeByte(type);
+        for (byte[] part : parts) {
+            out.write(part);
+        }
+        out.flush();
+    }
+
+    private DataInputStream readFrame(char expectedType) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > ComputationConstants.MAX_UNCOMPRESSED_WORK_SIZE) {
+            throw new IOException("Verifier worker " + id + " sent a malformed frame of length " + length);
+        }
+        byte[] payload = new byte[length];
+        in.readFully(payload);
+        if (payload[0] == 'E') {
+            throw new ProgramException("EPL code produced error: " + new String(payload, 1, length - 1, StandardCharsets.UTF_8));
+        }
+        if (payload[0] != expectedType) {
+            throw new IOException("Verifier worker " + id + " answered with frame type " + (char) payload[0] + " instead of " + expectedType);
+        }
+        return new DataInputStream(new ByteArrayInputStream(payload, 1, length - 1));
+    }
+
+    private static void writeShortPrefixed(DataOutputStream stream, byte[] bytes) throws IOException {
+        stream.writeShort(bytes.length);
+        stream.write(bytes);
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        kill();
+    }
+}
@@ -0,0 +1,152 @@
+package org.xel.computation;
+
+import org.xel.util.Logger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
+
+import static org.xel.computation.ExecutionEngine.bytesToHex;
+import static org.xel.computation.ExecutionEngine.hexStringToByteArray;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+/**
+ * The classic verifier: forks one ./xel_miner per verification, reading the code from its sandbox. Storage is
+ * streamed to stdin while stdout is drained, and the process is killed if it outlives its deadswitch.
+ */
+public class ProcessVerifier implements Verifier {
+
+    private static final Pattern ANSI_COLOR = Pattern.compile("\\[\\d+m");
+    private static final int MAX_KEPT_OUTPUT = 64 * 1024;
+
+    private final ExecutorService stdinFeeder = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "verifier stdin");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final File directory;
+    private final String executable;
+
+    public ProcessVerifier() {
+        this(new File("./work/"), "./xel_miner");
+    }
+
+    // runs another miner binary, e.g. a stub that emulates xel_miner's output for benchmarks
+    public ProcessVerifier(File directory, String executable) {
+        this.directory = directory;
+        this.executable = executable;
+    }
+
+    @Override
+    public ComputationResult compute(final byte[] target, final byte[] publicKey, final long blockId, final byte[] multiplicator, final long workId, String epl, int[] storage, boolean nocache) throws Exception {
+        try (VerificationSandbox.Lease sandbox = VerificationSandbox.acquire(epl)) {
+            return run(target, publicKey, blockId, multiplicator, workId, sandbox.codePath(), storage, nocache);
+        }
+    }
+
+    private ComputationResult run(final byte[] target, final byte[] publicKey, final long blockId, final byte[] multiplicator, final long workId, String codePath, int[] storage, boolean nocache) throws Exception {
+        ComputationResult r = new ComputationResult();
+
+        String cmd = "";
+        if(!nocache)
+            cmd = executable + String.format(" --test-target %s --test-publickey %s --test-multiplicator %s --test-block %d --test-work %d --verify-only --test-wcet-main %d --test-wcet-verify %d --deadswitch %d --test-stdin --test-limit-storage %d --test-vm %s", bytesToHex(target), bytesToHex(publicKey), bytesToHex(multiplicator), blockId, workId, ComputationConstants.MAX_MAIN_WCET, ComputationConstants.MAX_VERIFY_WCET, ComputationConstants.MAX_EXECUTION_TIME_IN_S, ComputationConstants.MAX_STORAGE_SIZE, codePath);
+        else
+            cmd = executable + String.format(" --test-avoidcache --test-target %s --test-publickey %s --test-multiplicator %s --test-block %d --test-work %d --verify-only --test-wcet-main %d --test-wcet-verify %d --deadswitch %d --test-stdin --test-limit-storage %d --test-vm %s", bytesToHex(target), bytesToHex(publicKey), bytesToHex(multiplicator), blockId, workId, ComputationConstants.MAX_MAIN_WCET, ComputationConstants.MAX_VERIFY_WCET, ComputationConstants.MAX_EXECUTION_TIME_IN_S, ComputationConstants.MAX_STORAGE_SIZE, codePath);
+
+        Logger.logDebugMessage(cmd);
+        // stderr is never looked at, discard it so a chatty miner cannot block on a full pipe
+        final Process process = new ProcessBuilder(cmd.split(" ")).directory(directory)
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        ScheduledFuture<?> timeout = ExecutionEngine.watchdog.schedule(() -> ExecutionEngine.kill(process), 2 * ComputationConstants.MAX_EXECUTION_TIME_IN_S, TimeUnit.SECONDS);
+        try {
+            // now shoot out storage via STDIN, on another thread so that stdout is drained at the same time
+            Future<?> feeder = stdinFeeder.submit(() -> {
+                try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.US_ASCII))) {
+                    if (storage.length > 0) {
+                        for (int value : storage) {
+                            writer.write(Integer.toUnsignedString(value));
+                            writer.write('\n');
+                        }
+                        writer.write('\n');
+                    }
+                }
+                return null;
+            });
+
+            StringBuilder fullOutp = new StringBuilder();
+            String line;
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII))) {
+                while ((line = reader.readLine()) != null) {
+                    if (line.indexOf('[') >= 0)
+                        line = ANSI_COLOR.matcher(line).replaceAll("");
+                    line = line.trim();
+
+                    if (line.contains("ERROR") || line.contains("Error")) {
+                        if (ExecutionEngine.dda) {
+                            Logger.logErrorMessage(cmd);
+                            Logger.logErrorMessage(fullOutp.toString());
+                        }
+                        throw new IOException("EPL code produced error: " + line);
+                    }
+                    // the miner's logger may put a timestamp in front of the message
+                    if (line.indexOf("DEBUG: ") >= 0) {
+                        if (line.contains("DEBUG: POW Found:")) {
+                            r.isPow = Boolean.parseBoolean(line.substring(line.lastIndexOf(":") + 2));
+                        } else if (line.contains("DEBUG: Bounty Found:")) {
+                            r.isBty = Boolean.parseBoolean(line.substring(line.lastIndexOf(":") + 2));
+                        } else if (line.contains("DEBUG: storage size:")) {
+                            r.storage_size = Integer.parseInt(line.substring(line.lastIndexOf(":") + 2));
+                        } else if (line.contains("DEBUG: POW Hash:")) {
+                            r.powHash = hexStringToByteArray(line.substring(line.lastIndexOf(":") + 2, line.lastIndexOf(":") + 2 + 32));
+                        }
+                    }
+                    // only kept for the error report, bounded so a runaway program cannot fill the heap
+                    if (fullOutp.length() < MAX_KEPT_OUTPUT)
+                        fullOutp.append(line).append('\n');
+                }
+            }
+
+            if (!process.waitFor(ComputationConstants.MAX_EXECUTION_TIME_IN_S, TimeUnit.SECONDS)) {
+                throw new IOException("EPL code did not terminate in time.");
+            }
+            try {
+                feeder.get();
+            } catch (ExecutionException e) {
+                // the miner may legitimately exit before reading all of its input, its exit code tells
+            }
+
+            if (process.exitValue() != 0) {
+                System.err.println(cmd);
+                System.err.println(fullOutp);
+                throw new IOException("EPL code exited with error code.");
+            }
+        } finally {
+            timeout.cancel(false);
+            ExecutionEngine.kill(process);
+        }
+
+        return r;
+    }
+
+    @Override
+    public void shutdown() {
+        stdinFeeder.shutdownNow();
+    }
+}
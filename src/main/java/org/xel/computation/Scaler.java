@@ -6,12 +6,37 @@ import java.math.MathContext;
 import java.math.RoundingMode;
 
 public class Scaler {
+
+    // target of the compact value 1, our target in compact form is in range 1..LONG_MAX/10000
+    private static final BigDecimal UNIT = new BigDecimal(ComputationConstants.MAXIMAL_WORK_TARGET)
+            .divide(BigDecimal.valueOf(((double)Long.MAX_VALUE/10000.0)), new MathContext(32, RoundingMode.HALF_EVEN));
+
+    private static final class Entry {
+        final long powTarget;
+        final BigInteger target;
+
+        Entry(long powTarget, BigInteger target) {
+            this.powTarget = powTarget;
+            this.target = target;
+        }
+    }
+
+    // the same few compact targets are converted over and over (one per block), entries are immutable so the
+    // unsynchronized array is safe, a lost update only costs a recomputation
+    private static final Entry[] cache = new Entry[64];
+
     public static BigInteger get(long powTarget){
-        MathContext mc = new MathContext(32, RoundingMode.HALF_EVEN);
-        BigDecimal myTarget = new BigDecimal(ComputationConstants.MAXIMAL_WORK_TARGET);
-        myTarget = myTarget.divide(BigDecimal.valueOf(((double)Long.MAX_VALUE/10000.0)), mc); // Note, our target in compact form is in range 1..LONG_MAX/100
-        myTarget = myTarget.multiply(BigDecimal.valueOf(powTarget));
-        BigInteger myTargetInt = myTarget.toBigInteger();
+        int slot = (int) (powTarget ^ (powTarget >>> 32)) & (cache.length - 1);
+        Entry entry = cache[slot];
+        if (entry != null && entry.powTarget == powTarget)
+            return entry.target;
+        BigInteger myTargetInt = compute(powTarget);
+        cache[slot] = new Entry(powTarget, myTargetInt);
+        return myTargetInt;
+    }
+
+    static BigInteger compute(long powTarget){
+        BigInteger myTargetInt = UNIT.multiply(BigDecimal.valueOf(powTarget)).toBigInteger();
         if(myTargetInt.compareTo(ComputationConstants.MAXIMAL_WORK_TARGET) == 1)
             myTargetInt = ComputationConstants.MAXIMAL_WORK_TARGET;
         if(myTargetInt.compareTo(BigInteger.ONE) == -1)
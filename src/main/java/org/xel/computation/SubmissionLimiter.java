@@ -0,0 +1,77 @@
+package org.xel.computation;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * Counts the prevalidated pow and bounty submissions per work for one computation block height. Counters are never
+ * cleared, the whole window is replaced as soon as somebody asks with a newer height or the chain is reset to a
+ * given height (which may also be a lower one after a pop-off).
+ */
+final class SubmissionLimiter {
+
+    private static final class Window {
+        final int height;
+        final ConcurrentHashMap<Long, AtomicInteger> pows = new ConcurrentHashMap<>();
+        final ConcurrentHashMap<Long, AtomicInteger> bounties = new ConcurrentHashMap<>();
+
+        Window(int height) {
+            this.height = height;
+        }
+
+        ConcurrentHashMap<Long, AtomicInteger> counters(boolean pow) {
+            return pow ? pows : bounties;
+        }
+    }
+
+    private final AtomicReference<Window> window = new AtomicReference<>(new Window(-1));
+
+    boolean isFull(long workId, boolean pow, int limit, int height) {
+        return count(workId, pow, height) >= limit;
+    }
+
+    int count(long workId, boolean pow, int height) {
+        AtomicInteger counter = windowFor(height).counters(pow).get(workId);
+        return (counter == null) ? 0 : counter.get();
+    }
+
+    // returns the new count
+    int record(long workId, boolean pow, int height) {
+        return windowFor(height).counters(pow).computeIfAbsent(workId, id -> new AtomicInteger()).incrementAndGet();
+    }
+
+    void reset(int height) {
+        window.set(new Window(height));
+    }
+
+    private Window windowFor(int height) {
+        Window current = window.get();
+        while (current.height < height) {
+            Window fresh = new Window(height);
+            if (window.compareAndSet(current, fresh)) {
+                return fresh;
+            }
+            current = window.get();
+        }
+        // a caller that still sees an older height must not throw away the counters of the current one
+        return (current.height == height) ? current : new Window(height);
+    }
+}
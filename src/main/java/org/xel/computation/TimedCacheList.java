@@ -1,76 +1,187 @@
 package org.xel.computation;
 
-import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
 
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * Remembers (transaction id, block id) pairs for four minutes. Entries go into one of a ring of time buckets, and a
+ * bucket is simply wiped when the clock comes around to it again, so expiry never needs a sweep. Lookups ignore
+ * buckets that have fallen out of the window. Each bucket holds at most a fixed number of pairs, so the whole
+ * structure is bounded; once the current bucket is full further pairs are not remembered until it rotates.
+ */
 public class TimedCacheList {
 
-    private static int REFRESH_INTERVAL = 5;
-    // holds the last time the cache has been refreshed in millis
-    private volatile long lastRefreshDate = (new Date()).getTime();
+    private static final long BUCKET_MILLIS = 30_000;
+    private static final int BUCKETS = 8; // 240 seconds of history
+    private static final int MAX_ENTRIES = 100_000;
 
-    // indicates that cache is currently refreshing entries
-    private volatile boolean cacheCurrentlyRefreshing;
+    private final Bucket[] buckets = new Bucket[BUCKETS];
+    private final int bucketCapacity;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
 
-    private Map<Pair<Long, Long>, Long> map = new HashMap<>();
+    public TimedCacheList() {
+        this(MAX_ENTRIES);
+    }
+
+    public TimedCacheList(int maxEntries) {
+        this.bucketCapacity = Math.max(1, maxEntries / BUCKETS);
+        for (int i = 0; i < BUCKETS; ++i) {
+            buckets[i] = new Bucket();
+        }
+    }
 
-    public void put(Long key, Long value) {
-        if (cacheNeedsRefresh()) {
-            refresh();
+    public void put(long key, long value) {
+        long slot = System.currentTimeMillis() / BUCKET_MILLIS;
+        Bucket bucket = buckets[(int) (slot % BUCKETS)];
+        synchronized (bucket) {
+            if (bucket.slot != slot) {
+                evictions.addAndGet(bucket.size);
+                bucket.reset(slot);
+            }
+            if (!bucket.add(key, value, bucketCapacity)) {
+                evictions.incrementAndGet();
+            }
         }
-        Pair<Long, Long> elem = new Pair<>(key,value);
-        map.put(elem, (new Date()).getTime());
     }
 
-    public boolean has(Long key, Long value) {
-        Pair<Long, Long> elem = new Pair<>(key,value);
-        if (cacheNeedsRefresh()) {
-            refresh();
+    public boolean has(long key, long value) {
+        long slot = System.currentTimeMillis() / BUCKET_MILLIS;
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                if (slot - bucket.slot < BUCKETS && bucket.contains(key, value)) {
+                    hits.incrementAndGet();
+                    return true;
+                }
+            }
         }
-        if(map.containsKey(elem)) return true;
+        misses.incrementAndGet();
         return false;
     }
 
-    private boolean cacheNeedsRefresh() {
-        // make sure that cache is not currently being refreshed by some
-        // other thread.
-        if (cacheCurrentlyRefreshing) {
-            return false;
+    public int itemcnt() {
+        long slot = System.currentTimeMillis() / BUCKET_MILLIS;
+        int count = 0;
+        for (Bucket bucket : buckets) {
+            synchronized (bucket) {
+                if (slot - bucket.slot < BUCKETS) {
+                    count += bucket.size;
+                }
+            }
         }
-        return ((new Date()).getTime() - lastRefreshDate)/1000 >= REFRESH_INTERVAL;
+        return count;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
     }
 
-    private void refresh() {
-        // make sure the cache did not start refreshing between cacheNeedsRefresh()
-        // and refresh() by some other thread.
-        if (cacheCurrentlyRefreshing) {
-            return;
+    // open addressing set of long pairs, no boxing
+    private static final class Bucket {
+
+        private static final int INITIAL_TABLE_SIZE = 64;
+
+        private long slot = Long.MIN_VALUE / 2;
+        private long[] keys = new long[INITIAL_TABLE_SIZE];
+        private long[] values = new long[INITIAL_TABLE_SIZE];
+        private boolean[] used = new boolean[INITIAL_TABLE_SIZE];
+        private int size;
+
+        void reset(long newSlot) {
+            slot = newSlot;
+            if (keys.length > INITIAL_TABLE_SIZE) {
+                keys = new long[INITIAL_TABLE_SIZE];
+                values = new long[INITIAL_TABLE_SIZE];
+                used = new boolean[INITIAL_TABLE_SIZE];
+            } else {
+                Arrays.fill(used, false);
+            }
+            size = 0;
         }
 
-        // signal to other threads that cache is currently being refreshed.
-        cacheCurrentlyRefreshing = true;
+        boolean contains(long key, long value) {
+            int mask = keys.length - 1;
+            for (int i = index(key, value, mask); used[i]; i = (i + 1) & mask) {
+                if (keys[i] == key && values[i] == value) {
+                    return true;
+                }
+            }
+            return false;
+        }
 
-        try {
-            long currTm = ((new Date()).getTime());
+        boolean add(long key, long value, int capacity) {
+            if (contains(key, value)) {
+                return true;
+            }
+            if (size >= capacity) {
+                return false;
+            }
+            if ((size + 1) * 2 > keys.length) {
+                grow();
+            }
+            insert(key, value);
+            return true;
+        }
 
-            // refresh your cache contents here
-            for(Iterator<Map.Entry<Pair<Long, Long> ,Long>> it = map.entrySet().iterator(); it.hasNext();){
-                Map.Entry<Pair<Long, Long>, Long> entry = it.next();
-                if ((currTm - entry.getValue())/1000 > 240) {
-                    it.remove();
+        private void insert(long key, long value) {
+            int mask = keys.length - 1;
+            int i = index(key, value, mask);
+            while (used[i]) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            values[i] = value;
+            used[i] = true;
+            size++;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            long[] oldValues = values;
+            boolean[] oldUsed = used;
+            keys = new long[oldKeys.length * 2];
+            values = new long[oldKeys.length * 2];
+            used = new boolean[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; ++i) {
+                if (oldUsed[i]) {
+                    insert(oldKeys[i], oldValues[i]);
                 }
             }
-        } finally {
-            // set the lastRefreshDate and signal that cache has finished
-            // refreshing to other threads.
-            lastRefreshDate = (new Date()).getTime();
-            cacheCurrentlyRefreshing = false;
         }
-    }
 
-    public int itemcnt() {
-        return map.size();
+        private static int index(long key, long value, int mask) {
+            long h = key * 0x9E3779B97F4A7C15L + value;
+            h ^= h >>> 33;
+            h *= 0xff51afd7ed558ccdL;
+            h ^= h >>> 33;
+            return (int) h & mask;
+        }
     }
 }
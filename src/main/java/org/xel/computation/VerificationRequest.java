@@ -0,0 +1,34 @@
+package org.xel.computation;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * One input of a batch verification: who submitted it, with which multiplicator, and the storage it runs against.
+ */
+public final class VerificationRequest {
+
+    final byte[] publicKey;
+    final byte[] multiplicator;
+    final int[] storage;
+
+    public VerificationRequest(byte[] publicKey, byte[] multiplicator, int[] storage) {
+        this.publicKey = publicKey;
+        this.multiplicator = multiplicator;
+        this.storage = storage;
+    }
+}
@@ -0,0 +1,134 @@
+package org.xel.computation;
+
+import org.xel.crypto.Crypto;
+import org.xel.util.Convert;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * Gives every distinct program its own scratch directory below work/sandbox, named after the sha256 of the source.
+ * Concurrent verifications therefore never overwrite each other's code, and submissions for the same work reuse the
+ * file that is already on disk. The miner itself still runs in work/, where its headers and libraries are; a sandbox
+ * that is in use by a running verification is never pruned.
+ */
+final class VerificationSandbox {
+
+    private static final File ROOT = new File("work/sandbox");
+    private static final int MAX_SANDBOXES = 256;
+
+    // running verifications per sandbox
+    private static final Map<String, Integer> inUse = new HashMap<>();
+
+    /**
+     * A sandbox held by one verification, released by close()
+     */
+    static final class Lease implements AutoCloseable {
+        private final String hash;
+        private boolean closed;
+
+        private Lease(String hash) {
+            this.hash = hash;
+        }
+
+        // the path of the code file, relative to the work/ directory the miner runs in
+        String codePath() {
+            return "sandbox/" + hash + "/code.epl";
+        }
+
+        @Override
+        public void close() {
+            synchronized (VerificationSandbox.class) {
+                if (!closed) {
+                    closed = true;
+                    inUse.computeIfPresent(hash, (key, count) -> count > 1 ? count - 1 : null);
+                }
+            }
+        }
+    }
+
+    static Lease acquire(String epl) throws IOException {
+        byte[] code = epl.getBytes(StandardCharsets.UTF_8);
+        String hash = Convert.toHexString(Crypto.sha256().digest(code));
+        // taken before the directory is looked at, so a concurrent prune leaves it alone from here on
+        synchronized (VerificationSandbox.class) {
+            inUse.merge(hash, 1, Integer::sum);
+        }
+        Lease lease = new Lease(hash);
+        try {
+            write(hash, code);
+        } catch (IOException | RuntimeException e) {
+            lease.close();
+            throw e;
+        }
+        return lease;
+    }
+
+    private static void write(String hash, byte[] code) throws IOException {
+        File dir = new File(ROOT, hash);
+        File codeFile = new File(dir, "code.epl");
+        if (!codeFile.isFile()) {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Cannot create verification sandbox " + dir);
+            }
+            // write under a unique name and move it into place, racing writers all produce the same content
+            File tmp = File.createTempFile("code", ".tmp", dir);
+            try {
+                Files.write(tmp.toPath(), code);
+                Files.move(tmp.toPath(), codeFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                tmp.delete();
+            }
+            prune();
+        } else {
+            dir.setLastModified(System.currentTimeMillis());
+        }
+    }
+
+    // keeps the number of sandboxes bounded, dropping the least recently used ones
+    private static synchronized void prune() {
+        File[] dirs = ROOT.listFiles(File::isDirectory);
+        if (dirs == null || dirs.length <= MAX_SANDBOXES) {
+            return;
+        }
+        Arrays.sort(dirs, Comparator.comparingLong(File::lastModified));
+        for (int i = 0; i < dirs.length - MAX_SANDBOXES; ++i) {
+            if (inUse.containsKey(dirs[i].getName())) {
+                continue;
+            }
+            File[] files = dirs[i].listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            dirs[i].delete();
+        }
+    }
+
+    private VerificationSandbox() {}
+}
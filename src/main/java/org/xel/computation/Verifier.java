@@ -0,0 +1,49 @@
+package org.xel.computation;
+
+import java.util.List;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+/**
+ * A backend that runs ElasticPL code against one (publickey, multiplicator) input and reports what the VM found.
+ * Implementations decide how the VM is reached: a fresh xel_miner process, a long-lived one, or an in-JVM engine.
+ */
+public interface Verifier {
+
+    ComputationResult compute(byte[] target, byte[] publicKey, long blockId, byte[] multiplicator, long workId,
+                              String epl, int[] storage, boolean nocache) throws Exception;
+
+    /**
+     * Verifies many inputs of one work against the same target. The result array is parallel to the requests, an
+     * entry is null if the VM failed on that input. Backends that can keep a program loaded should override this.
+     */
+    default ComputationResult[] computeBatch(byte[] target, long blockId, long workId, String epl,
+                                             List<VerificationRequest> requests, boolean nocache) throws Exception {
+        ComputationResult[] results = new ComputationResult[requests.size()];
+        for (int i = 0; i < results.length; ++i) {
+            VerificationRequest request = requests.get(i);
+            try {
+                results[i] = compute(target, request.publicKey, blockId, request.multiplicator, workId, epl, request.storage, nocache);
+            } catch (Exception e) {
+                results[i] = null;
+            }
+        }
+        return results;
+    }
+
+    void shutdown();
+}
@@ -0,0 +1,106 @@
+package org.xel.computation;
+
+import org.xel.util.Logger;
+
+import java.util.List;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+/**
+ * Spreads verifications over a fixed set of persistent xel_miner workers. Requests are routed by work id, so all
+ * submissions for one work hit the same worker and find their program already compiled. When a worker dies it is
+ * restarted on the next request; the request that hit the crash, and any request arriving while the worker is
+ * still backing off, is served by a forked process instead so no verification is ever lost to a broken worker.
+ */
+public class VerifierPool implements Verifier {
+
+    private static final long RESTART_BACKOFF_MS = 5000;
+
+    private final PersistentVerifier[] workers;
+    private final long[] lastCrash;
+    private final Verifier fallback;
+
+    public VerifierPool(int size, String command, Verifier fallback) {
+        this.workers = new PersistentVerifier[size];
+        this.lastCrash = new long[size];
+        this.fallback = fallback;
+        for (int i = 0; i < size; ++i) {
+            workers[i] = new PersistentVerifier(command, i);
+        }
+    }
+
+    @Override
+    public ComputationResult compute(final byte[] target, final byte[] publicKey, final long blockId, final byte[] multiplicator, final long workId, String epl, int[] storage, boolean nocache) throws Exception {
+        // one-off checks (syntax checks of new work, self tests) would only evict a warm program
+        if (workId == -1) {
+            return fallback.compute(target, publicKey, blockId, multiplicator, workId, epl, storage, nocache);
+        }
+
+        int slot = Math.floorMod(Long.hashCode(workId), workers.length);
+        synchronized (lastCrash) {
+            if (System.currentTimeMillis() - lastCrash[slot] < RESTART_BACKOFF_MS) {
+                return fallback.compute(target, publicKey, blockId, multiplicator, workId, epl, storage, nocache);
+            }
+        }
+
+        try {
+            return workers[slot].compute(target, publicKey, blockId, multiplicator, workId, epl, storage, nocache);
+        } catch (PersistentVerifier.ProgramException e) {
+            throw e;
+        } catch (Exception e) {
+            Logger.logWarningMessage("Verifier worker " + slot + " failed (" + e.getMessage() + "), it will be restarted; falling back to a forked verifier");
+            synchronized (lastCrash) {
+                lastCrash[slot] = System.currentTimeMillis();
+            }
+            return fallback.compute(target, publicKey, blockId, multiplicator, workId, epl, storage, nocache);
+        }
+    }
+
+    @Override
+    public ComputationResult[] computeBatch(byte[] target, long blockId, long workId, String epl, List<VerificationRequest> requests, boolean nocache) throws Exception {
+        if (workId == -1) {
+            return fallback.computeBatch(target, blockId, workId, epl, requests, nocache);
+        }
+
+        int slot = Math.floorMod(Long.hashCode(workId), workers.length);
+        synchronized (lastCrash) {
+            if (System.currentTimeMillis() - lastCrash[slot] < RESTART_BACKOFF_MS) {
+                return fallback.computeBatch(target, blockId, workId, epl, requests, nocache);
+            }
+        }
+
+        try {
+            return workers[slot].computeBatch(target, blockId, workId, epl, requests, nocache);
+        } catch (PersistentVerifier.ProgramException e) {
+            throw e;
+        } catch (Exception e) {
+            Logger.logWarningMessage("Verifier worker " + slot + " failed on a batch of " + requests.size() + " (" + e.getMessage() + "), it will be restarted; falling back to a forked verifier");
+            synchronized (lastCrash) {
+                lastCrash[slot] = System.currentTimeMillis();
+            }
+            return fallback.computeBatch(target, blockId, workId, epl, requests, nocache);
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        for (PersistentVerifier worker : workers) {
+            worker.shutdown();
+        }
+        fallback.shutdown();
+    }
+}
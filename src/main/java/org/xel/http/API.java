@@ -269,6 +269,11 @@ public final class API {
 
             apiHandler.addServlet(DbShellServlet.class, "/dbshell");
 
+            if (Nxt.getBooleanProperty("nxt.enableComputationEngine")) {
+                WorkFeed.init();
+                apiHandler.addServlet(WorkFeedServlet.class, "/work-feed").setAsyncSupported(true);
+            }
+
 
             if (apiServerCORS) {
                 FilterHolder filterHolder = apiHandler.addFilter(CrossOriginFilter.class, "/*", null);
@@ -341,6 +346,7 @@ public final class API {
                 Logger.logShutdownMessage("Failed to stop API server", e);
             }
         }
+        WorkFeed.shutdown();
     }
 
     public static void verifyPassword(HttpServletRequest req) throws ParameterException {
@@ -35,6 +35,7 @@ public enum APIEnum {
     GET_MINEABLE_WORK("getMineableWork", GetMineableWork.instance),
     CANCEL_WORK("cancelWork", CancelWork.instance),
     SUBMIT_SOLUTION("submitSolution", SubmitSolution.instance),
+    SUBMIT_SOLUTIONS("submitSolutions", SubmitSolutions.instance),
     LONGPOLL("longpoll",  Longpoll.instance),
     LASTBLOCK("getLastBlockId",  GetLastBlockId.instance),
     /* ELASTIC SPECIFIC END */
@@ -19,6 +19,7 @@ package org.xel.http;
 
 import org.json.simple.JSONArray;
 import org.xel.*;
+import org.xel.computation.CommandPowBty;
 import org.xel.computation.CustomTransactionBuilder;
 import org.xel.computation.Pair;
 import org.xel.db.DbIterator;
@@ -91,6 +92,10 @@ public final class GetState extends APIServlet.APIRequestHandler {
             response.put("totalOpen", Work.getActiveCount());
             response.put("totalClosed", Work.getCount()-Work.getActiveCount());
             response.put("grabs", Work.getGrabs());
+            response.put("validationCacheSize", CommandPowBty.validationCache.itemcnt());
+            response.put("validationCacheHits", CommandPowBty.validationCache.getHits());
+            response.put("validationCacheMisses", CommandPowBty.validationCache.getMisses());
+            response.put("validationCacheEvictions", CommandPowBty.validationCache.getEvictions());
         }
         try {
 
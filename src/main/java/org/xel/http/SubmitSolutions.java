@@ -0,0 +1,130 @@
+package org.xel.http;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.json.simple.JSONValue;
+import org.json.simple.parser.ParseException;
+import org.xel.NxtException;
+import org.xel.Work;
+import org.xel.computation.CommandPowBty;
+import org.xel.computation.MessageEncoder;
+import org.xel.computation.Pair;
+import org.xel.crypto.Crypto;
+import org.xel.util.Convert;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batched version of {@link SubmitSolution}. "solutions" is a JSON array of objects with the parameters of
+ * submitSolution (work_id, multiplicator, storage_id, is_pow, hash, data). All of them are signed with the same
+ * passphrase, prevalidated in parallel and broadcast together; the answer holds one status per solution.
+ */
+public final class SubmitSolutions extends CreateTransaction {
+
+    static final SubmitSolutions instance = new SubmitSolutions();
+
+    private static final int MAX_SOLUTIONS = 1000;
+
+    private SubmitSolutions() {
+        super(new APITag[] { APITag.CREATE_TRANSACTION }, "solutions");
+    }
+
+    @Override
+    protected JSONStreamAware processRequest(final HttpServletRequest req) throws NxtException {
+
+        final String secretPhrase = ParameterParser.getSecretPhrase(req, true);
+        int deadlineInt = ParameterParser.getInt(req, "deadline", 1, 3, false);
+        if(deadlineInt<1 || deadlineInt>3) deadlineInt = 1;
+
+        JSONArray solutions;
+        try {
+            String json = Convert.emptyToNull(req.getParameter("solutions"));
+            if(json == null) return JSONResponses.missing("solutions");
+            Object parsed = JSONValue.parseWithException(json);
+            if(!(parsed instanceof JSONArray)) return JSONResponses.incorrect("solutions");
+            solutions = (JSONArray) parsed;
+        } catch (ParseException | RuntimeException e) {
+            return JSONResponses.incorrect("solutions");
+        }
+        if(solutions.isEmpty() || solutions.size() > MAX_SOLUTIONS) return JSONResponses.incorrect("solutions", "between 1 and " + MAX_SOLUTIONS + " solutions expected");
+
+        final byte[] publicKey = Crypto.getPublicKey(secretPhrase);
+        JSONObject[] statuses = new JSONObject[solutions.size()];
+        List<CommandPowBty> works = new ArrayList<>();
+        List<Integer> positions = new ArrayList<>();
+        for(int i=0;i<solutions.size();++i){
+            try {
+                works.add(parseSolution((JSONObject) solutions.get(i), publicKey));
+                positions.add(i);
+            } catch (IllegalArgumentException | ClassCastException e) {
+                statuses[i] = error(e.getMessage());
+            }
+        }
+
+        List<Pair<Long, String>> results = MessageEncoder.pushAll(works, secretPhrase, deadlineInt);
+        for(int i=0;i<results.size();++i){
+            Pair<Long, String> result = results.get(i);
+            JSONObject status = new JSONObject();
+            if(result.getElement1() == null) {
+                status.put("transaction", Long.toUnsignedString(result.getElement0()));
+            } else {
+                status = error(result.getElement1());
+            }
+            statuses[positions.get(i)] = status;
+        }
+
+        JSONArray array = new JSONArray();
+        for(JSONObject status : statuses) array.add(status);
+        JSONObject response = new JSONObject();
+        response.put("results", array);
+        return response;
+    }
+
+    private static CommandPowBty parseSolution(JSONObject solution, byte[] publicKey) {
+        if(solution == null) throw new IllegalArgumentException("Solution is not an object");
+        long workId = Convert.parseUnsignedLong(String.valueOf(solution.get("work_id")));
+        Work w = Work.getWork(workId);
+        if(w == null || w.isClosed()) throw new IllegalArgumentException("Incorrect work");
+
+        byte[] multiplicator = Convert.parseHexString((String) solution.get("multiplicator"));
+        if(multiplicator == null) throw new IllegalArgumentException("Missing multiplicator");
+        byte[] data = Convert.parseHexString((String) solution.get("data"));
+        byte[] hash = Convert.parseHexString((String) solution.get("hash"));
+        boolean is_pow = Boolean.parseBoolean(String.valueOf(solution.get("is_pow")));
+        int storageId = solution.get("storage_id") == null ? 0 : Integer.parseInt(String.valueOf(solution.get("storage_id")));
+        if(storageId < 0) throw new IllegalArgumentException("Incorrect storage_id");
+
+        if(data==null||data.length==0) storageId = -1;
+        if(is_pow) data=new byte[0];
+
+        return new CommandPowBty(workId, is_pow, multiplicator, hash, data, storageId, w.getCurrentRound(), publicKey);
+    }
+
+    private static JSONObject error(String description) {
+        JSONObject response = new JSONObject();
+        response.put("errorCode", 6009);
+        response.put("errorDescription", description);
+        return response;
+    }
+
+}
@@ -0,0 +1,492 @@
+package org.xel.http;
+
+import org.json.simple.JSONArray;
+import org.xel.Block;
+import org.xel.BlockchainProcessor;
+import org.xel.Nxt;
+import org.xel.PowAndBounty;
+import org.xel.Work;
+import org.xel.computation.Scaler;
+import org.xel.db.DbIterator;
+import org.xel.util.Convert;
+import org.xel.util.Logger;
+
+import javax.servlet.AsyncContext;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * Binary feed of the mineable work for miners, served by {@link WorkFeedServlet}.
+ *
+ * The feed is a sequence of frames, each framed as length[4] type[1] seq[8] body (big-endian):
+ *   'Z' (empty)                                      a snapshot follows, drop everything known so far
+ *   'T' height[4] powTarget[8] target[16]            target for submissions to the next block
+ *   'W' work[8] round[4] block[8] storageSize[4]     a work, or a work that entered a new round
+ *       bountyLimit[4] xelPerPow[8] xelPerBounty[8]
+ *       sourceLength[4] source[...]
+ *   'S' work[8] round[4] count[4]                    storage slots that changed (all of them in a snapshot)
+ *       (slot[4] length[4] values[4*length])*
+ *   'B' work[8] round[4] count[4]                    inputs of the latest bounties, as in getState's "bounties"
+ *       (length[4] values[4*length])*               (all of them, whenever they change)
+ *   'C' work[8]                                      the work is no longer mineable
+ * A client polls with the seq of the last frame it has seen (of the 'Z' frame after a snapshot) and gets all newer
+ * frames, or a snapshot if it is too far behind. Work descriptors and the snapshot are encoded once and shared by all clients.
+ * The database is read and the frames are encoded without holding the feed lock, so clients are not stalled by a refresh.
+ */
+final class WorkFeed {
+
+    private static final int MAX_HISTORY = 4096;
+    private static final long IDLE_AFTER_MS = 10 * 60 * 1000;
+
+    private static final class Frame {
+        final long seq;
+        final byte[] bytes;
+
+        Frame(long seq, byte[] bytes) {
+            this.seq = seq;
+            this.bytes = bytes;
+        }
+    }
+
+    private static final class Waiter {
+        final AsyncContext context;
+        final long since;
+
+        Waiter(AsyncContext context, long since) {
+            this.context = context;
+            this.since = since;
+        }
+    }
+
+    private static final ExecutorService updater = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "WorkFeed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static long seq = 0;
+    private static long snapshotSeq = 0;
+    private static volatile boolean initialized = false;
+    // bumped by reset(), a refresh that started before it is dropped
+    private static long epoch = 0;
+    private static final Object refreshLock = new Object();
+    private static volatile long lastRequest = 0;
+    private static final ArrayDeque<Frame> history = new ArrayDeque<>();
+    private static final List<Waiter> waiters = new ArrayList<>();
+
+    private static byte[] targetFrame;
+    private static int targetHeight = -1;
+    // descriptor frame per work, valid for the round in rounds
+    private static final Map<Long, byte[]> descriptors = new LinkedHashMap<>();
+    private static final Map<Long, Integer> rounds = new HashMap<>();
+    private static final Map<Long, int[][]> storages = new HashMap<>();
+    private static final Map<Long, int[][]> bounties = new HashMap<>();
+    private static byte[] snapshot;
+
+    static void init() {
+        Nxt.getTemporaryComputationBlockchainProcessor().addListener(block -> {
+            if (System.currentTimeMillis() - lastRequest < IDLE_AFTER_MS) {
+                updater.submit(WorkFeed::update);
+            } else {
+                // nobody is listening, the next client gets a fresh snapshot
+                reset();
+            }
+        }, BlockchainProcessor.Event.BLOCK_PUSHED_COMPUTATION);
+        Nxt.getTemporaryComputationBlockchainProcessor().addListener(block -> reset(), BlockchainProcessor.Event.BLOCK_POPPED_COMPUTATION);
+        Nxt.getTemporaryComputationBlockchainProcessor().addListener(block -> reset(), BlockchainProcessor.Event.RESCAN_BEGIN_COMPUTATION);
+    }
+
+    static void shutdown() {
+        updater.shutdownNow();
+    }
+
+    /**
+     * Returns everything after since, or null if there is nothing new and the caller has to wait.
+     */
+    static byte[] framesSince(long since) {
+        lastRequest = System.currentTimeMillis();
+        if (!initialized) {
+            refresh();
+        }
+        return framesSinceLocked(since);
+    }
+
+    private static synchronized byte[] framesSinceLocked(long since) {
+        if (since >= seq && since >= snapshotSeq) {
+            return null;
+        }
+        Frame oldest = history.peekFirst();
+        if (since < snapshotSeq || oldest == null || since < oldest.seq - 1) {
+            return getSnapshot();
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (Frame frame : history) {
+            if (frame.seq > since) {
+                out.write(frame.bytes, 0, frame.bytes.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Parks the request until the feed moves past since. Returns the answer instead if that already happened.
+     */
+    static byte[] addWaiter(AsyncContext context, long since) {
+        lastRequest = System.currentTimeMillis();
+        if (!initialized) {
+            refresh();
+        }
+        synchronized (WorkFeed.class) {
+            byte[] answer = framesSinceLocked(since);
+            if (answer == null) {
+                waiters.add(new Waiter(context, since));
+            }
+            return answer;
+        }
+    }
+
+    static synchronized boolean removeWaiter(AsyncContext context) {
+        for (Iterator<Waiter> it = waiters.iterator(); it.hasNext(); ) {
+            if (it.next().context == context) {
+                it.remove();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static synchronized void reset() {
+        initialized = false;
+        ++epoch;
+        targetFrame = null;
+        targetHeight = -1;
+        descriptors.clear();
+        rounds.clear();
+        storages.clear();
+        bounties.clear();
+        history.clear();
+        snapshot = null;
+        snapshotSeq = ++seq;
+    }
+
+    private static void update() {
+        long before;
+        synchronized (WorkFeed.class) {
+            before = seq;
+        }
+        refresh();
+        List<Waiter> wake;
+        synchronized (WorkFeed.class) {
+            if (seq == before || waiters.isEmpty()) {
+                return;
+            }
+            wake = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        // most clients are up to date, so they all share the same answer
+        Map<Long, byte[]> answers = new HashMap<>();
+        for (Waiter waiter : wake) {
+            byte[] answer = answers.computeIfAbsent(waiter.since, WorkFeed::framesSinceLocked);
+            complete(waiter.context, answer);
+        }
+    }
+
+    static void complete(AsyncContext context, byte[] answer) {
+        try {
+            if (answer != null) {
+                context.getResponse().setContentLength(answer.length);
+                try (OutputStream out = context.getResponse().getOutputStream()) {
+                    out.write(answer);
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            Logger.logDebugMessage("Unable to send work feed: " + e.toString());
+        } finally {
+            context.complete();
+        }
+    }
+
+    private static final class Pending {
+        final char type;
+        final long workId;
+        final byte[] body;
+
+        Pending(char type, long workId, byte[] body) {
+            this.type = type;
+            this.workId = workId;
+            this.body = body;
+        }
+    }
+
+    private static void refresh() {
+        synchronized (refreshLock) {
+            long startEpoch;
+            int height;
+            Set<Long> known;
+            Map<Long, Integer> newRounds;
+            Map<Long, int[][]> newStorages;
+            Map<Long, int[][]> newBounties;
+            synchronized (WorkFeed.class) {
+                startEpoch = epoch;
+                height = targetHeight;
+                known = new LinkedHashSet<>(descriptors.keySet());
+                newRounds = new HashMap<>(rounds);
+                newStorages = new HashMap<>(storages);
+                newBounties = new HashMap<>(bounties);
+            }
+
+            List<Pending> pending = new ArrayList<>();
+            int newHeight = height;
+            try {
+                Block last = Nxt.getTemporaryComputationBlockchain().getLastBlock();
+                if (last != null && last.getHeight() != height) {
+                    newHeight = last.getHeight();
+                    pending.add(new Pending('T', 0, encodeBody(body -> encodeTarget(body, last))));
+                }
+
+                Set<Long> active = new HashSet<>();
+                try (DbIterator<Work> it = Work.getActiveWork()) {
+                    while (it.hasNext()) {
+                        Work work = it.next();
+                        active.add(work.getId());
+                        Integer round = newRounds.get(work.getId());
+                        if (round == null || round != work.getCurrentRound()) {
+                            newRounds.put(work.getId(), work.getCurrentRound());
+                            pending.add(new Pending('W', work.getId(), encodeBody(body -> encodeWork(body, work))));
+                        }
+                        int[][] current = new int[work.getStorage_size() > 0 ? work.getBounty_limit_per_iteration() : 0][];
+                        for (int slot = 0; slot < current.length; ++slot) {
+                            current[slot] = work.getStorage(slot);
+                        }
+                        int[][] previous = newStorages.put(work.getId(), current);
+                        List<Integer> changed = new ArrayList<>();
+                        for (int slot = 0; slot < current.length; ++slot) {
+                            if (previous == null || slot >= previous.length || !Arrays.equals(previous[slot], current[slot])) {
+                                changed.add(slot);
+                            }
+                        }
+                        if (!changed.isEmpty()) {
+                            pending.add(new Pending('S', work.getId(),
+                                    encodeBody(body -> encodeStorage(body, work.getId(), work.getCurrentRound(), current, changed))));
+                        }
+                        int[][] latest = getBountyInputs(work.getId());
+                        int[][] previousBounties = newBounties.put(work.getId(), latest);
+                        if (previousBounties == null ? latest.length > 0 : !Arrays.deepEquals(previousBounties, latest)) {
+                            pending.add(new Pending('B', work.getId(),
+                                    encodeBody(body -> encodeBounties(body, work.getId(), work.getCurrentRound(), latest))));
+                        }
+                    }
+                }
+
+                for (long workId : known) {
+                    if (!active.contains(workId)) {
+                        newRounds.remove(workId);
+                        newStorages.remove(workId);
+                        newBounties.remove(workId);
+                        pending.add(new Pending('C', workId, encodeBody(body -> body.writeLong(workId))));
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                Logger.logDebugMessage("Work feed update failed: " + e.toString());
+                return;
+            }
+
+            synchronized (WorkFeed.class) {
+                if (epoch != startEpoch) {
+                    // reset while we were reading, the next request starts over
+                    return;
+                }
+                for (Pending frame : pending) {
+                    byte[] bytes = append(frame.type, frame.body);
+                    switch (frame.type) {
+                        case 'T':
+                            targetFrame = bytes;
+                            break;
+                        case 'W':
+                            descriptors.put(frame.workId, bytes);
+                            break;
+                        case 'C':
+                            descriptors.remove(frame.workId);
+                            break;
+                        default:
+                            break;
+                    }
+                }
+                targetHeight = newHeight;
+                rounds.clear();
+                rounds.putAll(newRounds);
+                storages.clear();
+                storages.putAll(newStorages);
+                bounties.clear();
+                bounties.putAll(newBounties);
+                initialized = true;
+            }
+        }
+    }
+
+    private static int[][] getBountyInputs(long workId) {
+        List<int[]> inputs = new ArrayList<>();
+        try (DbIterator<PowAndBounty> it = PowAndBounty.getBountiesLimited(workId)) {
+            while (it.hasNext()) {
+                JSONArray ints = it.next().getJSONInts();
+                int[] values = new int[ints.size()];
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = ((Number) ints.get(i)).intValue();
+                }
+                inputs.add(values);
+            }
+        }
+        return inputs.toArray(new int[inputs.size()][]);
+    }
+
+    private interface BodyWriter {
+        void write(DataOutputStream body) throws IOException;
+    }
+
+    private static byte[] append(char type, byte[] body) {
+        byte[] frame = encodeFrame(type, ++seq, body);
+        history.addLast(new Frame(seq, frame));
+        while (history.size() > MAX_HISTORY) {
+            history.removeFirst();
+        }
+        snapshot = null;
+        return frame;
+    }
+
+    private static byte[] getSnapshot() {
+        if (snapshot == null) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                out.write(encodeFrame('Z', seq, new byte[0]));
+                if (targetFrame != null) {
+                    out.write(targetFrame);
+                }
+                for (Map.Entry<Long, byte[]> descriptor : descriptors.entrySet()) {
+                    out.write(descriptor.getValue());
+                    int[][] storage = storages.get(descriptor.getKey());
+                    if (storage != null && storage.length > 0) {
+                        List<Integer> all = new ArrayList<>();
+                        for (int slot = 0; slot < storage.length; ++slot) {
+                            all.add(slot);
+                        }
+                        out.write(encodeFrame('S', seq, encodeBody(body -> encodeStorage(body, descriptor.getKey(), rounds.get(descriptor.getKey()), storage, all))));
+                    }
+                    int[][] latest = bounties.get(descriptor.getKey());
+                    if (latest != null && latest.length > 0) {
+                        out.write(encodeFrame('B', seq, encodeBody(body -> encodeBounties(body, descriptor.getKey(), rounds.get(descriptor.getKey()), latest))));
+                    }
+                }
+                snapshot = out.toByteArray();
+            } catch (IOException e) {
+                throw new RuntimeException(e.toString(), e);
+            }
+        }
+        return snapshot;
+    }
+
+    private static byte[] encodeBody(BodyWriter writer) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(baos));
+        return baos.toByteArray();
+    }
+
+    private static byte[] encodeFrame(char type, long frameSeq, byte[] body) {
+        int length = 1 + 8 + body.length;
+        byte[] frame = new byte[4 + length];
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        buffer.putInt(length);
+        buffer.put((byte) type);
+        buffer.putLong(frameSeq);
+        buffer.put(body);
+        return frame;
+    }
+
+    private static void encodeTarget(DataOutputStream body, Block block) throws IOException {
+        long powTarget = block.getPowTarget();
+        body.writeInt(block.getHeight());
+        body.writeLong(powTarget);
+        BigInteger target = Scaler.get(powTarget == 0 ? 1 : powTarget);
+        int[] ints = Convert.bigintToInts(target, 4);
+        if (ints.length != 4) {
+            ints = new int[4];
+        }
+        for (int value : ints) {
+            body.writeInt(value);
+        }
+    }
+
+    private static void encodeWork(DataOutputStream body, Work work) throws IOException {
+        body.writeLong(work.getId());
+        body.writeInt(work.getCurrentRound());
+        body.writeLong(work.getBlock_id());
+        body.writeInt(work.getStorage_size());
+        body.writeInt(work.getBounty_limit_per_iteration());
+        body.writeLong(work.getXel_per_pow());
+        body.writeLong(work.getXel_per_bounty());
+        byte[] source = work.getSource_code() == null ? new byte[0] : work.getSource_code().getBytes(StandardCharsets.UTF_8);
+        body.writeInt(source.length);
+        body.write(source);
+    }
+
+    private static void encodeStorage(DataOutputStream body, long workId, int round, int[][] storage, List<Integer> slots) throws IOException {
+        body.writeLong(workId);
+        body.writeInt(round);
+        body.writeInt(slots.size());
+        for (int slot : slots) {
+            body.writeInt(slot);
+            body.writeInt(storage[slot].length);
+            for (int value : storage[slot]) {
+                body.writeInt(value);
+            }
+        }
+    }
+
+    private static void encodeBounties(DataOutputStream body, long workId, int round, int[][] inputs) throws IOException {
+        body.writeLong(workId);
+        body.writeInt(round);
+        body.writeInt(inputs.length);
+        for (int[] input : inputs) {
+            body.writeInt(input.length);
+            for (int value : input) {
+                body.writeInt(value);
+            }
+        }
+    }
+
+    private WorkFeed() {}
+}
@@ -0,0 +1,94 @@
+package org.xel.http;
+
+import org.xel.Nxt;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+/**
+ * Long-polling endpoint of the binary work feed, see {@link WorkFeed} for the format. GET /work-feed?since=seq
+ * answers at once if there is something newer than seq, otherwise the request is parked until the next computation
+ * block changes the feed or nxt.workFeedTimeout seconds have passed (then the answer is empty).
+ */
+public final class WorkFeedServlet extends HttpServlet {
+
+    private static final long TIMEOUT_MS = 1000L * Math.max(1, Nxt.getIntProperty("nxt.workFeedTimeout", 30));
+
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        resp.setHeader("Cache-Control", "no-cache, no-store, must-revalidate, private");
+        if (!API.isAllowed(req.getRemoteHost())) {
+            resp.sendError(HttpServletResponse.SC_FORBIDDEN);
+            return;
+        }
+        long since;
+        try {
+            String param = req.getParameter("since");
+            since = (param == null) ? 0 : Long.parseLong(param);
+        } catch (NumberFormatException e) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        resp.setContentType("application/octet-stream");
+
+        byte[] answer = WorkFeed.framesSince(since);
+        if (answer != null) {
+            resp.setContentLength(answer.length);
+            resp.getOutputStream().write(answer);
+            return;
+        }
+
+        AsyncContext context = req.startAsync();
+        context.setTimeout(TIMEOUT_MS);
+        context.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                if (WorkFeed.removeWaiter(event.getAsyncContext())) {
+                    WorkFeed.complete(event.getAsyncContext(), new byte[0]);
+                }
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                if (WorkFeed.removeWaiter(event.getAsyncContext())) {
+                    event.getAsyncContext().complete();
+                }
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        answer = WorkFeed.addWaiter(context, since);
+        if (answer != null) {
+            WorkFeed.complete(context, answer);
+        }
+    }
+}
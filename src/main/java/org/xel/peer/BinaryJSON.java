@@ -0,0 +1,234 @@
+package org.xel.peer;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.net.ProtocolException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binary form of the JSON messages exchanged with peers that provide {@link Peer.Service#BINARY}. The message tree is
+ * the same as in the text protocol, but byte arrays are carried as raw values instead of hex strings, which is how
+ * blocks and transactions are sent (see Block.getBinaryJSONObject and Transaction.getBinaryJSONObject).
+ */
+final class BinaryJSON {
+
+    private static final int NULL = 0;
+    private static final int FALSE = 1;
+    private static final int TRUE = 2;
+    private static final int LONG = 3;
+    private static final int DOUBLE = 4;
+    private static final int STRING = 5;
+    private static final int BYTES = 6;
+    private static final int ARRAY = 7;
+    private static final int OBJECT = 8;
+
+    private static final int MAX_DEPTH = 16;
+
+    private BinaryJSON() {}
+
+    /**
+     * Encode a message
+     *
+     * @param   json                        Message
+     * @return                              Encoded message
+     * @throws  IllegalArgumentException    The message holds a value that has no binary form
+     */
+    static byte[] encode(JSONObject json) {
+        Writer writer = new Writer();
+        writer.writeValue(json, 0);
+        return writer.toByteArray();
+    }
+
+    /**
+     * Decode a message
+     *
+     * @param   bytes                       Encoded message
+     * @return                              Message
+     * @throws  ProtocolException           The message is not valid
+     */
+    static JSONObject decode(byte[] bytes) throws ProtocolException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        try {
+            if (buffer.get() != OBJECT) {
+                throw new ProtocolException("Binary message is not an object");
+            }
+            JSONObject json = readObject(buffer, 0);
+            if (buffer.hasRemaining()) {
+                throw new ProtocolException("Binary message too long, " + buffer.remaining() + " extra bytes");
+            }
+            return json;
+        } catch (BufferUnderflowException e) {
+            throw new ProtocolException("Binary message truncated");
+        }
+    }
+
+    private static Object readValue(ByteBuffer buffer, int depth) throws ProtocolException {
+        int type = buffer.get();
+        switch (type) {
+            case NULL:
+                return null;
+            case FALSE:
+                return Boolean.FALSE;
+            case TRUE:
+                return Boolean.TRUE;
+            case LONG:
+                long value = readVarLong(buffer);
+                return (value >>> 1) ^ -(value & 1);
+            case DOUBLE:
+                return buffer.getDouble();
+            case STRING:
+                return new String(readBytes(buffer), StandardCharsets.UTF_8);
+            case BYTES:
+                return readBytes(buffer);
+            case ARRAY:
+                return readArray(buffer, depth + 1);
+            case OBJECT:
+                return readObject(buffer, depth + 1);
+            default:
+                throw new ProtocolException("Unknown binary value type " + type);
+        }
+    }
+
+    private static JSONObject readObject(ByteBuffer buffer, int depth) throws ProtocolException {
+        if (depth > MAX_DEPTH) {
+            throw new ProtocolException("Binary message nested too deeply");
+        }
+        int count = readCount(buffer);
+        JSONObject json = new JSONObject();
+        for (int i = 0; i < count; i++) {
+            String key = new String(readBytes(buffer), StandardCharsets.UTF_8);
+            json.put(key, readValue(buffer, depth));
+        }
+        return json;
+    }
+
+    private static JSONArray readArray(ByteBuffer buffer, int depth) throws ProtocolException {
+        if (depth > MAX_DEPTH) {
+            throw new ProtocolException("Binary message nested too deeply");
+        }
+        int count = readCount(buffer);
+        JSONArray array = new JSONArray();
+        for (int i = 0; i < count; i++) {
+            array.add(readValue(buffer, depth));
+        }
+        return array;
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer) throws ProtocolException {
+        byte[] bytes = new byte[readCount(buffer)];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    // every element takes at least one byte, so a count larger than what is left is a broken message
+    private static int readCount(ByteBuffer buffer) throws ProtocolException {
+        long count = readVarLong(buffer);
+        if (count < 0) {
+            throw new ProtocolException("Binary message length " + count + " is negative");
+        }
+        if (count > buffer.remaining()) {
+            throw new ProtocolException("Binary message length " + count + " exceeds the remaining " + buffer.remaining() + " bytes");
+        }
+        return (int) count;
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws ProtocolException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Binary message varint too long");
+    }
+
+    private static final class Writer extends ByteArrayOutputStream {
+
+        private Writer() {
+            super(1024);
+        }
+
+        private void writeValue(Object value, int depth) {
+            if (depth > MAX_DEPTH) {
+                throw new IllegalArgumentException("Message nested too deeply");
+            }
+            if (value == null) {
+                write(NULL);
+            } else if (value instanceof Boolean) {
+                write((Boolean) value ? TRUE : FALSE);
+            } else if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+                // like the text protocol, all integral numbers come back as Long
+                long number = ((Number) value).longValue();
+                write(LONG);
+                writeVarLong((number << 1) ^ (number >> 63));
+            } else if (value instanceof Double || value instanceof Float) {
+                long bits = Double.doubleToLongBits(((Number) value).doubleValue());
+                write(DOUBLE);
+                for (int shift = 56; shift >= 0; shift -= 8) {
+                    write((int) (bits >>> shift));
+                }
+            } else if (value instanceof String) {
+                write(STRING);
+                writeLengthPrefixed(((String) value).getBytes(StandardCharsets.UTF_8));
+            } else if (value instanceof byte[]) {
+                write(BYTES);
+                writeLengthPrefixed((byte[]) value);
+            } else if (value instanceof Map) {
+                Map<?, ?> map = (Map<?, ?>) value;
+                write(OBJECT);
+                writeVarLong(map.size());
+                for (Map.Entry<?, ?> entry : map.entrySet()) {
+                    writeLengthPrefixed(String.valueOf(entry.getKey()).getBytes(StandardCharsets.UTF_8));
+                    writeValue(entry.getValue(), depth + 1);
+                }
+            } else if (value instanceof List) {
+                List<?> list = (List<?>) value;
+                write(ARRAY);
+                writeVarLong(list.size());
+                for (Object element : list) {
+                    writeValue(element, depth + 1);
+                }
+            } else {
+                throw new IllegalArgumentException("No binary form for " + value.getClass().getName());
+            }
+        }
+
+        private void writeLengthPrefixed(byte[] bytes) {
+            writeVarLong(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package org.xel.peer;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.xel.util.JSON;
+import org.xel.util.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A request sent to many peers. Each encoding is serialized and compressed at most once, on first use, and the
+ * resulting buffer is shared by every WebSocket connection the request is written to.
+ */
+final class BroadcastRequest {
+
+    /** Prepared JSON request, also used for HTTP connections */
+    private final JSONStreamAware request;
+
+    /** Request for the binary encoding or null */
+    private final JSONObject binaryRequest;
+
+    private PeerWebSocket.EncodedMessage textMessage;
+
+    private PeerWebSocket.EncodedMessage binaryMessage;
+
+    private boolean binaryFailed;
+
+    BroadcastRequest(JSONStreamAware request, JSONObject binaryRequest) {
+        this.request = request;
+        this.binaryRequest = binaryRequest;
+    }
+
+    JSONStreamAware getRequest() {
+        return request;
+    }
+
+    JSONObject getBinaryRequest() {
+        return binaryRequest;
+    }
+
+    /**
+     * Get the JSON text encoding
+     *
+     * @return                      Encoded message
+     * @throws  IOException         The message could not be encoded
+     */
+    synchronized PeerWebSocket.EncodedMessage getTextMessage() throws IOException {
+        if (textMessage == null) {
+            textMessage = PeerWebSocket.encode(JSON.toString(request).getBytes(StandardCharsets.UTF_8), false);
+        }
+        return textMessage;
+    }
+
+    /**
+     * Get the binary encoding
+     *
+     * @return                      Encoded message or null if the request has no binary encoding
+     * @throws  IOException         The message could not be encoded
+     */
+    synchronized PeerWebSocket.EncodedMessage getBinaryMessage() throws IOException {
+        if (binaryMessage == null && binaryRequest != null && !binaryFailed) {
+            try {
+                binaryMessage = PeerWebSocket.encode(BinaryJSON.encode(binaryRequest), true);
+            } catch (IllegalArgumentException e) {
+                Logger.logDebugMessage("Unable to encode broadcast request: " + e.getMessage());
+                binaryFailed = true;
+            }
+        }
+        return binaryMessage;
+    }
+}
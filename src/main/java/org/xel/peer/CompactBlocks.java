@@ -0,0 +1,291 @@
+package org.xel.peer;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+import org.xel.Block;
+import org.xel.Constants;
+import org.xel.Nxt;
+import org.xel.NxtException;
+import org.xel.Transaction;
+import org.xel.TransactionProcessor;
+import org.xel.crypto.Crypto;
+import org.xel.util.Convert;
+import org.xel.util.JSON;
+import org.xel.util.Logger;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compact block relay. A new block is announced to peers that provide {@link Peer.Service#COMPACT_BLOCKS} as its
+ * header and short transaction ids. The receiver takes the transactions from its unconfirmed pool and answers with the
+ * positions of the ones it does not have, which the sender then delivers with processBlockTransactions on the same
+ * connection, so this also works when the sender does not accept inbound connections.
+ *
+ * Short ids are salted with a random value chosen per announcement, as in BIP152, so nobody can prepare a pool
+ * transaction that collides with a transaction of a future block. A block that still fails to validate after it was
+ * rebuilt is fetched in full from the sender instead of blaming the sender for it.
+ */
+final class CompactBlocks {
+
+    private static final int MAX_PENDING_BLOCKS = 16;
+
+    private static final class PendingBlock {
+        private final JSONObject blockData;
+        private final List<Integer> missing;
+        private final String host;
+
+        private PendingBlock(JSONObject blockData, List<Integer> missing, String host) {
+            this.blockData = blockData;
+            this.missing = missing;
+            this.host = host;
+        }
+    }
+
+    // blocks waiting for their missing transactions, keyed by chain and block id
+    private static final Map<String, PendingBlock> pendingBlocks = new LinkedHashMap<String, PendingBlock>(MAX_PENDING_BLOCKS, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PendingBlock> eldest) {
+            return size() > MAX_PENDING_BLOCKS;
+        }
+    };
+
+    private CompactBlocks() {}
+
+    /**
+     * Create the compact announcement of a block
+     *
+     * @param   block               Block
+     * @param   computational       TRUE for a computation chain block
+     * @return                      Block header with the salted short ids of its transactions
+     */
+    static JSONObject getCompactJSONObject(Block block, boolean computational) {
+        JSONObject json = computational ? block.getCompactJSONObjectComputational() : block.getCompactJSONObject();
+        long salt = ThreadLocalRandom.current().nextLong();
+        MessageDigest digest = Crypto.sha256();
+        JSONArray shortIds = new JSONArray();
+        block.getTransactions().forEach(transaction -> shortIds.add(Long.toUnsignedString(shortId(digest, salt, transaction))));
+        json.put("salt", Long.toUnsignedString(salt));
+        json.put("shortIds", shortIds);
+        return json;
+    }
+
+    /**
+     * Announce a block to a peer in compact form and deliver the transactions the peer is missing
+     *
+     * @param   peer                Peer
+     * @param   block               Block
+     * @param   request             Compact block request, shared by all peers
+     * @param   computational       TRUE for a computation chain block
+     * @return                      Peer response, completed with null if the request failed
+     */
+    static CompletableFuture<JSONObject> sendAsync(PeerImpl peer, Block block, BroadcastRequest request, boolean computational) {
+        return peer.sendAsync(request, Peers.MAX_RESPONSE_SIZE).thenCompose(response -> {
+            if (response == null || response.get("missingTransactions") == null) {
+                return CompletableFuture.completedFuture(response);
+            }
+            List<? extends Transaction> transactions = block.getTransactions();
+            JSONArray transactionsData = new JSONArray();
+            JSONArray binaryTransactionsData = new JSONArray();
+            for (Object position : (List<?>) response.get("missingTransactions")) {
+                int index = ((Number) position).intValue();
+                if (index < 0 || index >= transactions.size()) {
+                    Logger.logDebugMessage("Peer " + peer.getHost() + " asked for transaction " + index + " of a block with "
+                            + transactions.size() + " transactions");
+                    return CompletableFuture.completedFuture(null);
+                }
+                Transaction transaction = transactions.get(index);
+                transactionsData.add(computational ? transaction.getJSONObjectComputational() : transaction.getJSONObject());
+                if (Peers.useBinaryProtocol) {
+                    binaryTransactionsData.add(computational ? transaction.getBinaryJSONObjectComputational() : transaction.getBinaryJSONObject());
+                }
+            }
+            String requestType = computational ? "processBlockTransactionsComputation" : "processBlockTransactions";
+            JSONObject transactionsRequest = new JSONObject();
+            transactionsRequest.put("requestType", requestType);
+            transactionsRequest.put("block", block.getStringId());
+            transactionsRequest.put("transactions", transactionsData);
+            JSONObject binaryTransactionsRequest = null;
+            if (Peers.useBinaryProtocol) {
+                binaryTransactionsRequest = new JSONObject();
+                binaryTransactionsRequest.put("requestType", requestType);
+                binaryTransactionsRequest.put("block", block.getStringId());
+                binaryTransactionsRequest.put("transactions", binaryTransactionsData);
+                binaryTransactionsRequest.put("protocol", 1);
+            }
+            return peer.sendAsync(JSON.prepareRequest(transactionsRequest), binaryTransactionsRequest, Peers.MAX_RESPONSE_SIZE);
+        });
+    }
+
+    /**
+     * Rebuild a compact block from the unconfirmed pool
+     *
+     * @param   compactBlock        Compact block request
+     * @param   peer                Sending peer
+     * @param   computational       TRUE for a computation chain block
+     * @return                      Empty response, or the positions of the missing transactions
+     */
+    static JSONStreamAware receive(JSONObject compactBlock, Peer peer, boolean computational) {
+        List<?> shortIds = (List<?>) compactBlock.get("shortIds");
+        if (shortIds.size() > Constants.MAX_NUMBER_OF_TRANSACTIONS) {
+            peer.blacklist("Compact block with " + shortIds.size() + " transactions");
+            return JSON.emptyJSON;
+        }
+        long salt = Convert.parseUnsignedLong((String) compactBlock.get("salt"));
+        TransactionProcessor transactionProcessor = computational ? Nxt.getTemporaryComputationTransactionProcessor()
+                : Nxt.getTransactionProcessor();
+        // short ids of the pool, null where two pool transactions share one
+        Map<Long, Transaction> pool = new HashMap<>();
+        if (!shortIds.isEmpty()) {
+            MessageDigest digest = Crypto.sha256();
+            for (Transaction transaction : transactionProcessor.getCachedUnconfirmedTransactions(Collections.emptyList())) {
+                long shortId = shortId(digest, salt, transaction);
+                pool.put(shortId, pool.containsKey(shortId) ? null : transaction);
+            }
+        }
+        JSONArray transactions = new JSONArray();
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < shortIds.size(); i++) {
+            Transaction transaction = pool.get(Convert.parseUnsignedLong((String) shortIds.get(i)));
+            if (transaction != null) {
+                // only parsed again locally, the binary form saves the JSON round trip
+                transactions.add(computational ? transaction.getBinaryJSONObjectComputational() : transaction.getBinaryJSONObject());
+            } else {
+                transactions.add(null);
+                missing.add(i);
+            }
+        }
+        JSONObject blockData = new JSONObject();
+        blockData.putAll(compactBlock);
+        blockData.remove("shortIds");
+        blockData.remove("salt");
+        blockData.put("transactions", transactions);
+        if (missing.isEmpty()) {
+            process(blockData, peer, computational);
+            return JSON.emptyJSON;
+        }
+        synchronized (pendingBlocks) {
+            pendingBlocks.put(key(compactBlock, computational), new PendingBlock(blockData, missing, peer.getHost()));
+        }
+        JSONObject response = new JSONObject();
+        JSONArray missingTransactions = new JSONArray();
+        missingTransactions.addAll(missing);
+        response.put("missingTransactions", missingTransactions);
+        return response;
+    }
+
+    /**
+     * Complete a pending compact block with the transactions the sender delivered
+     *
+     * @param   request             Block transactions request
+     * @param   peer                Sending peer
+     * @param   computational       TRUE for a computation chain block
+     * @return                      Empty response
+     */
+    static JSONStreamAware receiveTransactions(JSONObject request, Peer peer, boolean computational) {
+        PendingBlock pendingBlock;
+        synchronized (pendingBlocks) {
+            pendingBlock = pendingBlocks.get(key(request, computational));
+            if (pendingBlock == null || !pendingBlock.host.equals(peer.getHost())) {
+                return JSON.emptyJSON;
+            }
+            pendingBlocks.remove(key(request, computational));
+        }
+        List<?> received = (List<?>) request.get("transactions");
+        if (received == null || received.size() != pendingBlock.missing.size()) {
+            fetchBlock(pendingBlock.blockData, peer, computational);
+            return JSON.emptyJSON;
+        }
+        JSONArray transactions = (JSONArray) pendingBlock.blockData.get("transactions");
+        for (int i = 0; i < received.size(); i++) {
+            transactions.set(pendingBlock.missing.get(i), received.get(i));
+        }
+        process(pendingBlock.blockData, peer, computational);
+        return JSON.emptyJSON;
+    }
+
+    private static String key(JSONObject request, boolean computational) {
+        return (computational ? "c" : "m") + request.get("block");
+    }
+
+    private static long shortId(MessageDigest digest, long salt, Transaction transaction) {
+        digest.update(ByteBuffer.allocate(8).putLong(salt).array());
+        return Convert.fullHashToId(digest.digest(Convert.parseHexString(transaction.getFullHash())));
+    }
+
+    private static void process(JSONObject blockData, Peer peer, boolean computational) {
+        Peers.peersService.submit(() -> {
+            try {
+                processPeerBlock(blockData, computational);
+            } catch (NxtException | RuntimeException e) {
+                // the pool may have supplied a wrong transaction, only the full block tells whose fault it is
+                Logger.logDebugMessage("Rebuilt compact block " + blockData.get("block") + " failed, fetching it from "
+                        + peer.getHost() + ": " + e.getMessage());
+                fetchBlock(blockData, peer, computational);
+            }
+        });
+    }
+
+    /**
+     * Get a block the compact form could not be used for from the peer that announced it
+     *
+     * @param   blockData           Rebuilt block
+     * @param   peer                Announcing peer
+     * @param   computational       TRUE for a computation chain block
+     */
+    private static void fetchBlock(JSONObject blockData, Peer peer, boolean computational) {
+        Peers.peersService.submit(() -> {
+            JSONObject request = new JSONObject();
+            request.put("requestType", computational ? "getNextBlocksComputation" : "getNextBlocks");
+            request.put("blockId", blockData.get("previousBlock"));
+            JSONArray blockIds = new JSONArray();
+            blockIds.add(blockData.get("block"));
+            request.put("blockIds", blockIds);
+            JSONObject response = peer.send(JSON.prepareRequest(request), request, 10 * 1024 * 1024);
+            List<?> nextBlocks = response != null ? (List<?>) response.get("nextBlocks") : null;
+            if (nextBlocks == null || nextBlocks.size() != 1) {
+                // not available any more, block download will catch up
+                return;
+            }
+            try {
+                processPeerBlock((JSONObject) nextBlocks.get(0), computational);
+            } catch (NxtException | RuntimeException e) {
+                peer.blacklist(e);
+            }
+        });
+    }
+
+    private static void processPeerBlock(JSONObject blockData, boolean computational) throws NxtException {
+        if (computational) {
+            Nxt.getTemporaryComputationBlockchainProcessor().processPeerBlock(blockData);
+        } else {
+            Nxt.getBlockchainProcessor().processPeerBlock(blockData);
+        }
+    }
+}
@@ -43,6 +43,11 @@ final class GetNextBlocks extends PeerServlet.PeerRequestHandler {
 
     @Override
     JSONStreamAware processRequest(JSONObject request, Peer peer) {
+        return processRequest(request, peer, false);
+    }
+
+    @Override
+    JSONStreamAware processRequest(JSONObject request, Peer peer, boolean binary) {
 
         JSONObject response = new JSONObject();
         JSONArray nextBlocksArray = new JSONArray();
@@ -65,7 +70,7 @@ final class GetNextBlocks extends PeerServlet.PeerRequestHandler {
         }
 
 
-        blocks.forEach(block -> nextBlocksArray.add(block.getJSONObject()));
+        blocks.forEach(block -> nextBlocksArray.add(binary ? block.getBinaryJSONObject() : block.getJSONObject()));
         response.put("nextBlocks", nextBlocksArray);
 
         return response;
@@ -43,6 +43,11 @@ final class GetNextBlocksComputation extends PeerServlet.PeerRequestHandler {
 
     @Override
     JSONStreamAware processRequest(JSONObject request, Peer peer) {
+        return processRequest(request, peer, false);
+    }
+
+    @Override
+    JSONStreamAware processRequest(JSONObject request, Peer peer, boolean binary) {
 
         JSONObject response = new JSONObject();
         JSONArray nextBlocksArray = new JSONArray();
@@ -67,7 +72,7 @@ final class GetNextBlocksComputation extends PeerServlet.PeerRequestHandler {
         blocks.forEach(block -> block.getGeneratorPubkeyComputational());
 
 
-        blocks.forEach(block -> nextBlocksArray.add(block.getJSONObjectComputational()));
+        blocks.forEach(block -> nextBlocksArray.add(binary ? block.getBinaryJSONObjectComputational() : block.getJSONObjectComputational()));
         response.put("nextBlocks", nextBlocksArray);
 
         return response;
@@ -16,15 +16,24 @@
 
 package org.xel.peer;
 
+import org.xel.Constants;
 import org.xel.Nxt;
 import org.xel.Transaction;
+import org.xel.TransactionProcessor;
+import org.xel.util.Convert;
+import org.xel.util.IdSketch;
 import org.xel.util.JSON;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.SortedSet;
+import java.util.function.Function;
 
 final class GetUnconfirmedTransactions extends PeerServlet.PeerRequestHandler {
 
@@ -32,29 +41,101 @@ final class GetUnconfirmedTransactions extends PeerServlet.PeerRequestHandler {
 
     private GetUnconfirmedTransactions() {}
 
-
-    @Override
-    JSONStreamAware processRequest(JSONObject request, Peer peer) {
-
-        List<String> exclude = (List<String>)request.get("exclude");
-        if (exclude == null) {
-            return JSON.emptyJSON;
+    /**
+     * Answer a request with the transactions of a pool that the requesting peer is missing. The response carries the
+     * size of the whole difference between the two pools, both the transactions the peer is missing and the ones only
+     * the peer has, so the peer can size its next sketch. If the sketch is too small to be decoded, the response only
+     * has sketchFailed and an estimate of the difference.
+     *
+     * @param   request                 Request with either a sketch and its seed or an exclude list
+     * @param   peer                    Requesting peer
+     * @param   transactionProcessor    Transaction processor holding the pool
+     * @param   toJSON                  Encodes a transaction for the response
+     * @return                          Response
+     */
+    static JSONStreamAware processRequest(JSONObject request, Peer peer, TransactionProcessor transactionProcessor,
+                                          Function<Transaction, JSONObject> toJSON) {
+        List<Transaction> missing = new ArrayList<>();
+        long difference;
+        if (request.get("sketch") != null) {
+            IdSketch remoteSketch;
+            try {
+                remoteSketch = parseSketch(request);
+            } catch (IllegalArgumentException e) {
+                peer.blacklist(e);
+                return JSON.emptyJSON;
+            }
+            SortedSet<? extends Transaction> transactionSet = transactionProcessor.getCachedUnconfirmedTransactions(Collections.emptyList());
+            IdSketch sketch = new IdSketch(remoteSketch.getCells(), remoteSketch.getSeed());
+            transactionSet.forEach(transaction -> sketch.add(transaction.getId()));
+            sketch.subtract(remoteSketch);
+            Set<Long> added = new HashSet<>();
+            List<Long> removed = new ArrayList<>();
+            boolean decoded = sketch.decode(added, removed);
+            difference = (long) added.size() + removed.size();
+            if (!decoded) {
+                JSONObject response = new JSONObject();
+                response.put("sketchFailed", true);
+                response.put("difference", difference + sketch.estimateRemaining());
+                return response;
+            }
+            for (Transaction transaction : transactionSet) {
+                if (added.contains(transaction.getId())) {
+                    missing.add(transaction);
+                }
+            }
+        } else {
+            List<String> exclude = (List<String>)request.get("exclude");
+            if (exclude == null) {
+                return JSON.emptyJSON;
+            }
+            int shared = 0;
+            for (Transaction transaction : transactionProcessor.getCachedUnconfirmedTransactions(Collections.emptyList())) {
+                if (Collections.binarySearch(exclude, transaction.getStringId()) < 0) {
+                    missing.add(transaction);
+                } else {
+                    shared++;
+                }
+            }
+            difference = (long) missing.size() + exclude.size() - shared;
         }
 
-        SortedSet<? extends Transaction> transactionSet = Nxt.getTransactionProcessor().getCachedUnconfirmedTransactions(exclude);
         JSONArray transactionsData = new JSONArray();
-        for (Transaction transaction : transactionSet) {
+        for (Transaction transaction : missing) {
             if (transactionsData.size() >= 100) {
                 break;
             }
-            transactionsData.add(transaction.getJSONObject());
+            transactionsData.add(toJSON.apply(transaction));
         }
         JSONObject response = new JSONObject();
         response.put("unconfirmedTransactions", transactionsData);
-
+        response.put("difference", difference);
         return response;
     }
 
+    // the sketch is raw bytes in a binary request and hex in a JSON one
+    private static IdSketch parseSketch(JSONObject request) {
+        Object sketch = request.get("sketch");
+        byte[] bytes;
+        if (sketch instanceof byte[]) {
+            bytes = (byte[]) sketch;
+        } else if (sketch instanceof String) {
+            bytes = Convert.parseHexString((String) sketch);
+        } else {
+            throw new IllegalArgumentException("Invalid sketch");
+        }
+        IdSketch remoteSketch = IdSketch.parse(bytes, Convert.parseUnsignedLong((String)request.get("seed")));
+        if (remoteSketch.getCells() > Constants.MAX_TRANSACTION_SKETCH_CELLS) {
+            throw new IllegalArgumentException("Sketch with " + remoteSketch.getCells() + " cells");
+        }
+        return remoteSketch;
+    }
+
+    @Override
+    JSONStreamAware processRequest(JSONObject request, Peer peer) {
+        return processRequest(request, peer, Nxt.getTransactionProcessor(), Transaction::getJSONObject);
+    }
+
     @Override
     boolean rejectWhileDownloading() {
         return true;
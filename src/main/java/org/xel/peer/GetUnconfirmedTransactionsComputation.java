@@ -16,15 +16,10 @@
 
 package org.xel.peer;
 
-import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 import org.xel.Nxt;
 import org.xel.Transaction;
-import org.xel.util.JSON;
-
-import java.util.List;
-import java.util.SortedSet;
 
 final class GetUnconfirmedTransactionsComputation extends PeerServlet.PeerRequestHandler {
 
@@ -35,28 +30,11 @@ final class GetUnconfirmedTransactionsComputation extends PeerServlet.PeerReques
 
     @Override
     JSONStreamAware processRequest(JSONObject request, Peer peer) {
-
-        List<String> exclude = (List<String>)request.get("exclude");
-        if (exclude == null) {
-            return JSON.emptyJSON;
-        }
-
-        SortedSet<? extends Transaction> transactionSet = Nxt.getTemporaryComputationTransactionProcessor().getCachedUnconfirmedTransactions(exclude);
-        JSONArray transactionsData = new JSONArray();
-        for (Transaction transaction : transactionSet) {
-            if (transactionsData.size() >= 100) {
-                break;
-            }
-
+        return GetUnconfirmedTransactions.processRequest(request, peer, Nxt.getTemporaryComputationTransactionProcessor(), transaction -> {
             // preload pubkeys
             transaction.getSenderPublicKeyComputational();
-
-            transactionsData.add(transaction.getJSONObjectComputational());
-        }
-        JSONObject response = new JSONObject();
-        response.put("unconfirmedTransactions", transactionsData);
-
-        return response;
+            return transaction.getJSONObjectComputational();
+        });
     }
 
     @Override
@@ -21,6 +21,7 @@ import org.json.simple.JSONObject;
 import org.json.simple.JSONStreamAware;
 
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 public interface Peer extends Comparable<Peer> {
 
@@ -34,7 +35,10 @@ public interface Peer extends Comparable<Peer> {
         API(4),                         // Provides open API access over http
         API_SSL(8),                     // Provides open API access over https
         CORS(16),                      // API CORS enabled
-        COMPUTATION_REDIRECTOR(32);                       // Runs the second blockchain for computational tasks
+        COMPUTATION_REDIRECTOR(32),                       // Runs the second blockchain for computational tasks
+        BINARY(64),                     // Accepts binary encoded messages over WebSocket
+        COMPACT_BLOCKS(128),            // Accepts blocks announced as header and transaction ids
+        TRANSACTION_SKETCHES(256);      // Reconciles unconfirmed transactions with sketches
 
         private final long code;        // Service code - must be a power of 2
 
@@ -130,4 +134,17 @@ public interface Peer extends Comparable<Peer> {
 
     JSONObject send(JSONStreamAware request, int maxResponseSize);
 
+    JSONObject send(JSONStreamAware request, JSONObject binaryRequest, int maxResponseSize);
+
+    /**
+     * Send a request without waiting for the response. Over a WebSocket connection no thread is held while the
+     * request is in flight; otherwise the request is sent from the peers thread pool.
+     *
+     * @param   request             Request
+     * @param   binaryRequest       Request for the binary encoding or null
+     * @param   maxResponseSize     Maximum response size
+     * @return                      Response, completed with null if the request failed
+     */
+    CompletableFuture<JSONObject> sendAsync(JSONStreamAware request, JSONObject binaryRequest, int maxResponseSize);
+
 }
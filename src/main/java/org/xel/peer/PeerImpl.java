@@ -48,8 +48,10 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.zip.GZIPInputStream;
 
 final class PeerImpl implements Peer {
@@ -454,6 +456,11 @@ final class PeerImpl implements Peer {
 
     @Override
     public JSONObject send(final JSONStreamAware request, int maxResponseSize) {
+        return send(request, null, maxResponseSize);
+    }
+
+    @Override
+    public JSONObject send(final JSONStreamAware request, final JSONObject binaryRequest, int maxResponseSize) {
         JSONObject response = null;
         String log = null;
         boolean showLog = false;
@@ -469,7 +476,23 @@ final class PeerImpl implements Peer {
             //
             // Send the request and process the response
             //
-            if (useWebSocket) {
+            if (useWebSocket && binaryRequest != null && Peers.useBinaryProtocol && providesService(Service.BINARY)) {
+                //
+                // Send the binary encoded request using the WebSocket session
+                //
+                byte[] wsRequest = BinaryJSON.encode(binaryRequest);
+                if (communicationLoggingMask != 0)
+                    log = "WebSocket " + host + ": " + JSON.toString(request);
+                PeerWebSocket.Payload wsResponse = webSocket.doPost(wsRequest, true);
+                updateUploadedVolume(wsRequest.length);
+                if (maxResponseSize > 0) {
+                    if ((communicationLoggingMask & Peers.LOGGING_MASK_200_RESPONSES) != 0) {
+                        log += " >>> " + wsResponse.getString();
+                        showLog = true;
+                    }
+                    response = readWebSocketResponse(wsResponse, maxResponseSize);
+                }
+            } else if (useWebSocket) {
                 //
                 // Send the request using the WebSocket session
                 //
@@ -556,17 +579,10 @@ final class PeerImpl implements Peer {
             // Check for an error response
             //
             if (response != null && response.get("error") != null) {
-                deactivate();
-                if (Errors.SEQUENCE_ERROR.equals(response.get("error")) && request != Peers.getMyPeerInfoRequest()) {
-                    Logger.logDebugMessage("Sequence error, reconnecting to " + host);
+                if (processErrorResponse(request, response)) {
                     connect();
-                } else {
-                    Logger.logDebugMessage("Peer " + host + " version " + version + " returned error: " +
-                            response.toJSONString() + ", request was: " + JSON.toString(request) +
-                            ", disconnecting");
-                    if (connection != null) {
-                        connection.disconnect();
-                    }
+                } else if (connection != null) {
+                    connection.disconnect();
                 }
             }
         } catch (NxtException.NxtIOException e) {
@@ -575,11 +591,7 @@ final class PeerImpl implements Peer {
                 connection.disconnect();
             }
         } catch (RuntimeException|ParseException|IOException e) {
-            if (!(e instanceof UnknownHostException || e instanceof SocketTimeoutException ||
-                                        e instanceof SocketException || Errors.END_OF_FILE.equals(e.getMessage()))) {
-                Logger.logDebugMessage(String.format("Error sending request to peer %s: %s",
-                                       host, e.getMessage()!=null ? e.getMessage() : e.toString()));
-            }
+            logSendException(e);
             if ((communicationLoggingMask & Peers.LOGGING_MASK_EXCEPTIONS) != 0) {
                 log += " >>> " + e.toString();
                 showLog = true;
@@ -596,6 +608,153 @@ final class PeerImpl implements Peer {
         return response;
     }
 
+    @Override
+    public CompletableFuture<JSONObject> sendAsync(final JSONStreamAware request, final JSONObject binaryRequest, int maxResponseSize) {
+        if (!useWebSocket || !webSocket.isOpen()) {
+            // connecting and HTTP requests block, run them on the peers thread pool
+            return CompletableFuture.supplyAsync(() -> send(request, binaryRequest, maxResponseSize), Peers.peersService);
+        }
+        boolean binary = binaryRequest != null && Peers.useBinaryProtocol && providesService(Service.BINARY);
+        byte[] wsRequest;
+        try {
+            wsRequest = binary ? BinaryJSON.encode(binaryRequest) : JSON.toString(request).getBytes(StandardCharsets.UTF_8);
+        } catch (RuntimeException e) {
+            logSendException(e);
+            deactivate();
+            return CompletableFuture.completedFuture(null);
+        }
+        return processWebSocketResponse(request, webSocket.doPostAsync(wsRequest, binary), wsRequest.length, maxResponseSize);
+    }
+
+    /**
+     * Send a request that is shared with other peers without waiting for the response
+     *
+     * @param   request             Broadcast request
+     * @param   maxResponseSize     Maximum response size
+     * @return                      Response, completed with null if the request failed
+     */
+    CompletableFuture<JSONObject> sendAsync(final BroadcastRequest request, int maxResponseSize) {
+        if (!useWebSocket || !webSocket.isOpen()) {
+            return CompletableFuture.supplyAsync(() -> send(request.getRequest(), request.getBinaryRequest(), maxResponseSize),
+                    Peers.peersService);
+        }
+        PeerWebSocket.EncodedMessage wsRequest = null;
+        try {
+            if (request.getBinaryRequest() != null && Peers.useBinaryProtocol && providesService(Service.BINARY)) {
+                wsRequest = request.getBinaryMessage();
+            }
+            if (wsRequest == null) {
+                wsRequest = request.getTextMessage();
+            }
+        } catch (IOException e) {
+            logSendException(e);
+            return CompletableFuture.completedFuture(null);
+        }
+        return processWebSocketResponse(request.getRequest(), webSocket.doPostAsync(wsRequest), wsRequest.length, maxResponseSize);
+    }
+
+    /**
+     * Process the response to an asynchronous WebSocket request
+     *
+     * @param   request             Request
+     * @param   wsResponse          Pending response
+     * @param   requestLength       Uncompressed request length
+     * @param   maxResponseSize     Maximum response size
+     * @return                      Response, completed with null if the request failed
+     */
+    private CompletableFuture<JSONObject> processWebSocketResponse(JSONStreamAware request,
+                                                                   CompletableFuture<PeerWebSocket.Payload> wsResponse,
+                                                                   int requestLength, int maxResponseSize) {
+        int communicationLoggingMask = Peers.communicationLoggingMask;
+        String requestLog = communicationLoggingMask != 0 ? "WebSocket " + host + ": " + JSON.toString(request) : null;
+        // responses are completed on the WebSocket read thread, parse them elsewhere
+        return wsResponse.handleAsync((message, exc) -> {
+            JSONObject response = null;
+            String log = requestLog;
+            boolean showLog = false;
+            try {
+                if (exc != null) {
+                    throw PeerWebSocket.asIOException(exc);
+                }
+                updateUploadedVolume(requestLength);
+                if (maxResponseSize > 0) {
+                    if ((communicationLoggingMask & Peers.LOGGING_MASK_200_RESPONSES) != 0) {
+                        log += " >>> " + message.getString();
+                        showLog = true;
+                    }
+                    response = readWebSocketResponse(message, maxResponseSize);
+                    if (response.get("error") != null && processErrorResponse(request, response)) {
+                        // connecting blocks, never do it on a completion thread
+                        Peers.peersService.submit(this::connect);
+                    }
+                }
+            } catch (NxtException.NxtIOException e) {
+                blacklist(e);
+            } catch (RuntimeException|ParseException|IOException e) {
+                logSendException(e);
+                if ((communicationLoggingMask & Peers.LOGGING_MASK_EXCEPTIONS) != 0) {
+                    log += " >>> " + e.toString();
+                    showLog = true;
+                }
+                deactivate();
+            }
+            if (showLog) {
+                Logger.logMessage(log + "\n");
+            }
+            return response;
+        }, Peers.peersService);
+    }
+
+    /**
+     * Check the size of a WebSocket response and parse it
+     *
+     * @param   wsResponse                  Response message
+     * @param   maxResponseSize             Maximum response size
+     * @return                              Response
+     * @throws  NxtException.NxtIOException The response is too large
+     * @throws  IOException                 The binary response is not valid
+     * @throws  ParseException              The JSON response is not valid
+     */
+    private JSONObject readWebSocketResponse(PeerWebSocket.Payload wsResponse, int maxResponseSize)
+            throws NxtException.NxtIOException, IOException, ParseException {
+        if (wsResponse.bytes.length > maxResponseSize)
+            throw new NxtException.NxtIOException("Maximum size exceeded: " + wsResponse.bytes.length);
+        JSONObject response;
+        if (wsResponse.binary)
+            response = BinaryJSON.decode(wsResponse.bytes);
+        else
+            response = (JSONObject)JSONValue.parseWithException(wsResponse.getString());
+        updateDownloadedVolume(wsResponse.bytes.length);
+        return response;
+    }
+
+    /**
+     * Deactivate the peer after an error response
+     *
+     * @param   request                     Request
+     * @param   response                    Error response
+     * @return                              TRUE if the caller has to reconnect the peer
+     */
+    private boolean processErrorResponse(JSONStreamAware request, JSONObject response) {
+        deactivate();
+        if (Errors.SEQUENCE_ERROR.equals(response.get("error")) && request != Peers.getMyPeerInfoRequest()) {
+            Logger.logDebugMessage("Sequence error, reconnecting to " + host);
+            return true;
+        }
+        Logger.logDebugMessage("Peer " + host + " version " + version + " returned error: " +
+                response.toJSONString() + ", request was: " + JSON.toString(request) +
+                ", disconnecting");
+        return false;
+    }
+
+    private void logSendException(Exception e) {
+        if (!(e instanceof UnknownHostException || e instanceof SocketTimeoutException ||
+                                    e instanceof SocketException || Errors.END_OF_FILE.equals(e.getMessage()))) {
+            Logger.logDebugMessage(String.format("Error sending request to peer %s: %s",
+                                   host, e.getMessage()!=null ? e.getMessage() : e.toString()));
+        }
+    }
+
     @Override
     public int compareTo(Peer o) {
         if (getWeight() > o.getWeight()) {
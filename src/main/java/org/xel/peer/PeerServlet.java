@@ -19,6 +19,7 @@ package org.xel.peer;
 import org.xel.BlockchainProcessor;
 import org.xel.Constants;
 import org.xel.Nxt;
+import org.xel.NxtException;
 import org.xel.util.CountingInputReader;
 import org.xel.util.CountingOutputWriter;
 import org.xel.util.JSON;
@@ -41,6 +42,7 @@ import java.io.Reader;
 import java.io.StringReader;
 import java.io.StringWriter;
 import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -49,6 +51,10 @@ public final class PeerServlet extends WebSocketServlet {
 
     abstract static class PeerRequestHandler {
         abstract JSONStreamAware processRequest(JSONObject request, Peer peer);
+        // handlers that return blocks or transactions override this to send them in their binary form
+        JSONStreamAware processRequest(JSONObject request, Peer peer, boolean binary) {
+            return processRequest(request, peer);
+        }
         abstract boolean rejectWhileDownloading();
     }
 
@@ -66,6 +72,7 @@ public final class PeerServlet extends WebSocketServlet {
         map.put("getTransactions", GetTransactions.instance);
         map.put("getUnconfirmedTransactions", GetUnconfirmedTransactions.instance);
         map.put("processBlock", ProcessBlock.instance);
+        map.put("processBlockTransactions", ProcessBlockTransactions.instance);
         map.put("processTransactions", ProcessTransactions.instance);
 
         if(Nxt.getBooleanProperty("nxt.enableComputationBlockchainRedirector") || Nxt.getBooleanProperty("nxt.enableComputationEngine")){
@@ -74,6 +81,7 @@ public final class PeerServlet extends WebSocketServlet {
             map.put("getNextBlockIdsComputation", GetNextBlockIdsComputation.instance);
             map.put("getNextBlocksComputation", GetNextBlocksComputation.instance);
             map.put("processBlockComputation", ProcessBlockComputation.instance);
+            map.put("processBlockTransactionsComputation", ProcessBlockTransactionsComputation.instance);
             map.put("processTransactionsComputation", ProcessTransactionsComputation.instance);
             map.put("getUnconfirmedTransactionsComputation", GetUnconfirmedTransactionsComputation.instance);
             map.put("getTransactionsComputation", GetTransactionsComputation.instance);
@@ -204,7 +212,7 @@ public final class PeerServlet extends WebSocketServlet {
      * @param   requestId           Request identifier
      * @param   request             Request message
      */
-    void doPost(PeerWebSocket webSocket, long requestId, String request) {
+    void doPost(PeerWebSocket webSocket, long requestId, PeerWebSocket.Payload request) {
         JSONStreamAware jsonResponse;
         //
         // Process the peer request
@@ -219,18 +227,37 @@ public final class PeerServlet extends WebSocketServlet {
             jsonResponse = UNKNOWN_PEER;
         } else {
             peer.setInboundWebSocket(webSocket);
-            jsonResponse = process(peer, new StringReader(request));
+            if (request.binary) {
+                jsonResponse = process(peer, request.bytes);
+            } else {
+                jsonResponse = process(peer, new StringReader(new String(request.bytes, StandardCharsets.UTF_8)));
+            }
         }
         //
         // Return the response
         //
         try {
-            StringWriter writer = new StringWriter(1000);
-            JSON.writeJSONString(jsonResponse, writer);
-            String response = writer.toString();
-            webSocket.sendResponse(requestId, response);
-            if (peer != null) {
-                peer.updateUploadedVolume(response.length());
+            byte[] binaryResponse = null;
+            if (request.binary && jsonResponse instanceof JSONObject) {
+                try {
+                    binaryResponse = BinaryJSON.encode((JSONObject) jsonResponse);
+                } catch (IllegalArgumentException e) {
+                    Logger.logDebugMessage("Sending response as JSON text: " + e.getMessage());
+                }
+            }
+            if (binaryResponse != null) {
+                webSocket.sendResponse(requestId, binaryResponse, true);
+                if (peer != null) {
+                    peer.updateUploadedVolume(binaryResponse.length);
+                }
+            } else {
+                StringWriter writer = new StringWriter(1000);
+                JSON.writeJSONString(jsonResponse, writer);
+                String response = writer.toString();
+                webSocket.sendResponse(requestId, response);
+                if (peer != null) {
+                    peer.updateUploadedVolume(response.length());
+                }
             }
         } catch (RuntimeException | IOException e) {
             if (peer != null) {
@@ -259,10 +286,7 @@ public final class PeerServlet extends WebSocketServlet {
         // Check for blacklisted peer
         //
         if (peer.isBlacklisted()) {
-            JSONObject jsonObject = new JSONObject();
-            jsonObject.put("error", Errors.BLACKLISTED);
-            jsonObject.put("cause", peer.getBlacklistingCause());
-            return jsonObject;
+            return blacklisted(peer);
         }
         Peers.addPeer(peer);
         //
@@ -271,36 +295,7 @@ public final class PeerServlet extends WebSocketServlet {
         try (CountingInputReader cr = new CountingInputReader(inputReader, Peers.MAX_REQUEST_SIZE)) {
             JSONObject request = (JSONObject)JSONValue.parseWithException(cr);
             peer.updateDownloadedVolume(cr.getCount());
-            if (request.get("protocol") == null || ((Number)request.get("protocol")).intValue() != 1) {
-                Logger.logDebugMessage("Unsupported protocol " + request.get("protocol"));
-                return UNSUPPORTED_PROTOCOL;
-            }
-            PeerRequestHandler peerRequestHandler = peerRequestHandlers.get((String)request.get("requestType"));
-            if (peerRequestHandler == null) {
-                return UNSUPPORTED_REQUEST_TYPE;
-            }
-            if (peer.getState() == Peer.State.DISCONNECTED) {
-                peer.setState(Peer.State.CONNECTED);
-            }
-            if (peer.getVersion() == null && !"getInfo".equals(request.get("requestType"))) {
-                return SEQUENCE_ERROR;
-            }
-            if (!peer.isInbound()) {
-                if (Peers.hasTooManyInboundPeers()) {
-                    return MAX_INBOUND_CONNECTIONS;
-                }
-                Peers.notifyListeners(peer, Peers.Event.ADD_INBOUND);
-            }
-            peer.setLastInboundRequest(Nxt.getEpochTime());
-            if (peerRequestHandler.rejectWhileDownloading()) {
-                if (blockchainProcessor.isDownloading()) {
-                    return DOWNLOADING;
-                }
-                if (Constants.isLightClient) {
-                    return LIGHT_CLIENT;
-                }
-            }
-            return peerRequestHandler.processRequest(request, peer);
+            return process(peer, request, false);
         } catch (RuntimeException|ParseException|IOException e) {
             Logger.logDebugMessage("Error processing POST request: " + e.toString());
             peer.blacklist(e);
@@ -308,6 +303,72 @@ public final class PeerServlet extends WebSocketServlet {
         }
     }
 
+    /**
+     * Process a binary encoded peer request
+     *
+     * @param   peer                Peer
+     * @param   requestBytes        Binary encoded request
+     * @return                      JSON response
+     */
+    private JSONStreamAware process(PeerImpl peer, byte[] requestBytes) {
+        if (peer.isBlacklisted()) {
+            return blacklisted(peer);
+        }
+        Peers.addPeer(peer);
+        try {
+            if (requestBytes.length > Peers.MAX_REQUEST_SIZE) {
+                throw new NxtException.NxtIOException("Maximum size exceeded: " + requestBytes.length);
+            }
+            JSONObject request = BinaryJSON.decode(requestBytes);
+            peer.updateDownloadedVolume(requestBytes.length);
+            return process(peer, request, true);
+        } catch (RuntimeException|IOException e) {
+            Logger.logDebugMessage("Error processing POST request: " + e.toString());
+            peer.blacklist(e);
+            return error(e);
+        }
+    }
+
+    private static JSONStreamAware blacklisted(PeerImpl peer) {
+        JSONObject jsonObject = new JSONObject();
+        jsonObject.put("error", Errors.BLACKLISTED);
+        jsonObject.put("cause", peer.getBlacklistingCause());
+        return jsonObject;
+    }
+
+    private JSONStreamAware process(PeerImpl peer, JSONObject request, boolean binary) {
+        if (request.get("protocol") == null || ((Number)request.get("protocol")).intValue() != 1) {
+            Logger.logDebugMessage("Unsupported protocol " + request.get("protocol"));
+            return UNSUPPORTED_PROTOCOL;
+        }
+        PeerRequestHandler peerRequestHandler = peerRequestHandlers.get((String)request.get("requestType"));
+        if (peerRequestHandler == null) {
+            return UNSUPPORTED_REQUEST_TYPE;
+        }
+        if (peer.getState() == Peer.State.DISCONNECTED) {
+            peer.setState(Peer.State.CONNECTED);
+        }
+        if (peer.getVersion() == null && !"getInfo".equals(request.get("requestType"))) {
+            return SEQUENCE_ERROR;
+        }
+        if (!peer.isInbound()) {
+            if (Peers.hasTooManyInboundPeers()) {
+                return MAX_INBOUND_CONNECTIONS;
+            }
+            Peers.notifyListeners(peer, Peers.Event.ADD_INBOUND);
+        }
+        peer.setLastInboundRequest(Nxt.getEpochTime());
+        if (peerRequestHandler.rejectWhileDownloading()) {
+            if (blockchainProcessor.isDownloading()) {
+                return DOWNLOADING;
+            }
+            if (Constants.isLightClient) {
+                return LIGHT_CLIENT;
+            }
+        }
+        return peerRequestHandler.processRequest(request, peer, binary);
+    }
+
     /**
      * WebSocket creator for peer connections
      */
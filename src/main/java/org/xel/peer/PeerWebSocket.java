@@ -21,6 +21,7 @@ import org.xel.util.QueuedThreadPool;
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.UpgradeException;
 import org.eclipse.jetty.websocket.api.WebSocketException;
+import org.eclipse.jetty.websocket.api.WriteCallback;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketClose;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketConnect;
 import org.eclipse.jetty.websocket.api.annotations.OnWebSocketMessage;
@@ -40,13 +41,16 @@ import java.net.URI;
 import java.nio.ByteBuffer;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -60,9 +64,15 @@ public class PeerWebSocket {
     /** Compressed message flag */
     private static final int FLAG_COMPRESSED = 1;
 
+    /** Binary encoded message flag, see BinaryJSON */
+    private static final int FLAG_BINARY = 2;
+
     /** Our WebSocket message version */
     private static final int VERSION = 1;
 
+    /** Message header length */
+    private static final int HEADER_LENGTH = 20;
+
     /** Create the WebSocket client */
     private static WebSocketClient peerClient;
     static {
@@ -79,7 +89,7 @@ public class PeerWebSocket {
     }
 
     /** Negotiated WebSocket message version */
-    private int version = VERSION;
+    private volatile int version = VERSION;
 
     /** Thread pool for server request processing */
     private static final ExecutorService threadPool = new QueuedThreadPool(
@@ -96,10 +106,10 @@ public class PeerWebSocket {
     private final ReentrantLock lock = new ReentrantLock();
 
     /** Pending POST request map */
-    private final ConcurrentHashMap<Long, PostRequest> requestMap = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Long, CompletableFuture<Payload>> requestMap = new ConcurrentHashMap<>();
 
     /** Next POST request identifier */
-    private long nextRequestId = 0;
+    private final AtomicLong nextRequestId = new AtomicLong();
 
     /** WebSocket connection timestamp */
     private long connectTime = 0;
@@ -225,57 +235,112 @@ public class PeerWebSocket {
      * @throws  IOException         I/O error occurred
      */
     public String doPost(String request) throws IOException {
-        long requestId;
-        //
-        // Send the POST request
-        //
-        lock.lock();
-        try {
-            if (session == null || !session.isOpen()) {
-                throw new IOException("WebSocket session is not open");
-            }
-            requestId = nextRequestId++;
-            byte[] requestBytes = request.getBytes("UTF-8");
-            int requestLength = requestBytes.length;
-            int flags = 0;
-            if (Peers.isGzipEnabled && requestLength >= Peers.MIN_COMPRESS_SIZE) {
-                flags |= FLAG_COMPRESSED;
-                ByteArrayOutputStream outStream = new ByteArrayOutputStream(requestLength);
-                try (GZIPOutputStream gzipStream = new GZIPOutputStream(outStream)) {
-                    gzipStream.write(requestBytes);
-                }
-                requestBytes = outStream.toByteArray();
-            }
-            ByteBuffer buf = ByteBuffer.allocate(requestBytes.length + 20);
-            buf.putInt(version)
-               .putLong(requestId)
-               .putInt(flags)
-               .putInt(requestLength)
-               .put(requestBytes)
-               .flip();
-            if (buf.limit() > Peers.MAX_MESSAGE_SIZE) {
-                throw new ProtocolException("POST request length exceeds max message size");
-            }
-            session.getRemote().sendBytes(buf);
-        } catch (WebSocketException exc) {
-            throw new SocketException(exc.getMessage());
-        } finally {
-            lock.unlock();
-        }
-        //
-        // Get the response
-        //
-        String response;
+        return doPost(request.getBytes("UTF-8"), false).getString();
+    }
+
+    /**
+     * Process a POST request in either encoding.  A binary request is answered
+     * in the binary encoding unless the response is a prepared JSON message.
+     *
+     * @param   request             Request message
+     * @param   binary              TRUE if the request is binary encoded
+     * @return                      Response message
+     * @throws  IOException         I/O error occurred
+     */
+    Payload doPost(byte[] request, boolean binary) throws IOException {
         try {
-            PostRequest postRequest = new PostRequest();
-            requestMap.put(requestId, postRequest);
-            response = postRequest.get(Peers.readTimeout, TimeUnit.MILLISECONDS);
+            return doPostAsync(request, binary).get();
         } catch (InterruptedException exc) {
             throw new SocketTimeoutException("WebSocket POST interrupted");
+        } catch (ExecutionException exc) {
+            throw asIOException(exc.getCause());
+        }
+    }
+
+    /**
+     * Send a POST request without waiting for the response.  The message is
+     * framed and compressed by the calling thread, the WebSocket lock is only
+     * held to queue it, so a large message does not delay other requests to
+     * the same peer.
+     *
+     * @param   request             Request message
+     * @param   binary              TRUE if the request is binary encoded
+     * @return                      Response, completed with an IOException on failure or timeout
+     */
+    CompletableFuture<Payload> doPostAsync(byte[] request, boolean binary) {
+        long requestId = nextRequestId.getAndIncrement();
+        CompletableFuture<Payload> response = newRequest(requestId);
+        try {
+            sendMessage(requestId, request, binary ? FLAG_BINARY : 0, "POST request", response);
+        } catch (IOException exc) {
+            response.completeExceptionally(exc);
         }
         return response;
     }
 
+    /**
+     * Send a POST request that has already been encoded, see {@link #encode(byte[], boolean)}.
+     * The message is compressed only once, but each connection still copies the
+     * encoded bytes into its own pooled frame behind a fresh header.
+     *
+     * @param   request             Encoded request message
+     * @return                      Response, completed with an IOException on failure or timeout
+     */
+    CompletableFuture<Payload> doPostAsync(EncodedMessage request) {
+        long requestId = nextRequestId.getAndIncrement();
+        CompletableFuture<Payload> response = newRequest(requestId);
+        FrameBuffer frame = FrameBuffer.acquire();
+        try {
+            frame.skipHeader();
+            frame.write(request.bytes, 0, request.bytes.length);
+            sendFrame(requestId, request.flags, request.length, frame, "POST request", response);
+        } catch (IOException | RuntimeException exc) {
+            frame.release();
+            response.completeExceptionally(asIOException(exc));
+        }
+        return response;
+    }
+
+    /**
+     * Register a pending POST request.  This is done before the request is sent
+     * since the response can arrive before the send returns.
+     *
+     * @param   requestId           Request identifier
+     * @return                      Response, completed with a TimeoutException after the read timeout
+     */
+    private CompletableFuture<Payload> newRequest(long requestId) {
+        CompletableFuture<Payload> response = new CompletableFuture<>();
+        requestMap.put(requestId, response);
+        response.whenComplete((message, exc) -> requestMap.remove(requestId));
+        response.orTimeout(Peers.readTimeout, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    /**
+     * Compress a message once so it can be sent on several connections
+     *
+     * @param   messageBytes        Message
+     * @param   binary              TRUE if the message is binary encoded
+     * @return                      Encoded message
+     * @throws  IOException         I/O error occurred
+     */
+    static EncodedMessage encode(byte[] messageBytes, boolean binary) throws IOException {
+        int flags = binary ? FLAG_BINARY : 0;
+        byte[] bytes = messageBytes;
+        if (Peers.isGzipEnabled && messageBytes.length >= Peers.MIN_COMPRESS_SIZE) {
+            flags |= FLAG_COMPRESSED;
+            ByteArrayOutputStream outStream = new ByteArrayOutputStream(messageBytes.length / 2);
+            try (GZIPOutputStream gzipStream = new GZIPOutputStream(outStream, 8192)) {
+                gzipStream.write(messageBytes);
+            }
+            bytes = outStream.toByteArray();
+        }
+        if (bytes.length + HEADER_LENGTH > Peers.MAX_MESSAGE_SIZE) {
+            throw new ProtocolException("Message length exceeds max message size");
+        }
+        return new EncodedMessage(bytes, flags, messageBytes.length);
+    }
+
     /**
      * Send POST response
      *
@@ -286,32 +351,111 @@ public class PeerWebSocket {
      * @throws  IOException         I/O error occurred
      */
     public void sendResponse(long requestId, String response) throws IOException {
+        sendResponse(requestId, response.getBytes("UTF-8"), false);
+    }
+
+    /**
+     * Send POST response in either encoding
+     *
+     * @param   requestId           Request identifier
+     * @param   response            Response message
+     * @param   binary              TRUE if the response is binary encoded
+     * @throws  IOException         I/O error occurred
+     */
+    void sendResponse(long requestId, byte[] response, boolean binary) throws IOException {
+        if (isOpen()) {
+            sendMessage(requestId, response, binary ? FLAG_BINARY : 0, "POST response", null);
+        }
+    }
+
+    /**
+     * Frame, compress and send a message
+     *
+     * The message is encoded into a pooled buffer before taking the WebSocket lock
+     * and the write completes asynchronously.  A write failure completes the
+     * pending request, if there is one.
+     *
+     * @param   requestId           Request identifier
+     * @param   messageBytes        Message
+     * @param   flags               Message flags
+     * @param   what                Message description for errors
+     * @param   pendingRequest      Request waiting for a response or null
+     * @throws  IOException         I/O error occurred
+     */
+    private void sendMessage(long requestId, byte[] messageBytes, int flags, String what,
+                             CompletableFuture<Payload> pendingRequest) throws IOException {
+        FrameBuffer frame = FrameBuffer.acquire();
+        try {
+            int messageLength = messageBytes.length;
+            frame.skipHeader();
+            if (Peers.isGzipEnabled && messageLength >= Peers.MIN_COMPRESS_SIZE) {
+                flags |= FLAG_COMPRESSED;
+                try (GZIPOutputStream gzipStream = new GZIPOutputStream(frame, 8192)) {
+                    gzipStream.write(messageBytes);
+                }
+            } else {
+                frame.write(messageBytes);
+            }
+            sendFrame(requestId, flags, messageLength, frame, what, pendingRequest);
+        } catch (IOException | RuntimeException exc) {
+            frame.release();
+            throw exc;
+        }
+    }
+
+    /**
+     * Fill in the message header and send the message
+     *
+     * @param   requestId           Request identifier
+     * @param   flags               Message flags
+     * @param   messageLength       Uncompressed message length
+     * @param   frame               Message with space reserved for the header
+     * @param   what                Message description for errors
+     * @param   pendingRequest      Request waiting for a response or null
+     * @throws  IOException         I/O error occurred
+     */
+    private void sendFrame(long requestId, int flags, int messageLength, FrameBuffer frame, String what,
+                           CompletableFuture<Payload> pendingRequest) throws IOException {
+        if (frame.size() > Peers.MAX_MESSAGE_SIZE) {
+            throw new ProtocolException(what + " length exceeds max message size");
+        }
+        ByteBuffer buf = frame.toByteBuffer();
+        buf.putInt(version)
+           .putLong(requestId)
+           .putInt(flags)
+           .putInt(messageLength)
+           .rewind();
+        write(buf, frame, pendingRequest);
+    }
+
+    /**
+     * Queue a framed message on the WebSocket session
+     *
+     * @param   buf                 Framed message
+     * @param   frame               Buffer to release when the write completes
+     * @param   pendingRequest      Request waiting for a response or null
+     * @throws  IOException         I/O error occurred
+     */
+    private void write(ByteBuffer buf, FrameBuffer frame, CompletableFuture<Payload> pendingRequest) throws IOException {
         lock.lock();
         try {
-            if (session != null && session.isOpen()) {
-                byte[] responseBytes = response.getBytes("UTF-8");
-                int responseLength = responseBytes.length;
-                int flags = 0;
-                if (Peers.isGzipEnabled && responseLength >= Peers.MIN_COMPRESS_SIZE) {
-                    flags |= FLAG_COMPRESSED;
-                    ByteArrayOutputStream outStream = new ByteArrayOutputStream(responseLength);
-                    try (GZIPOutputStream gzipStream = new GZIPOutputStream(outStream)) {
-                        gzipStream.write(responseBytes);
+            if (session == null || !session.isOpen()) {
+                throw new IOException("WebSocket session is not open");
+            }
+            session.getRemote().sendBytes(buf, new WriteCallback() {
+                @Override
+                public void writeFailed(Throwable exc) {
+                    frame.release();
+                    if (pendingRequest != null) {
+                        pendingRequest.completeExceptionally(asIOException(exc));
                     }
-                    responseBytes = outStream.toByteArray();
                 }
-                ByteBuffer buf = ByteBuffer.allocate(responseBytes.length + 20);
-                buf.putInt(version)
-                   .putLong(requestId)
-                   .putInt(flags)
-                   .putInt(responseLength)
-                   .put(responseBytes)
-                   .flip();
-                if (buf.limit() > Peers.MAX_MESSAGE_SIZE) {
-                    throw new ProtocolException("POST response length exceeds max message size");
+
+                @Override
+                public void writeSuccess() {
+                    frame.release();
                 }
-                session.getRemote().sendBytes(buf);
-            }
+            });
         } catch (WebSocketException exc) {
             throw new SocketException(exc.getMessage());
         } finally {
@@ -319,6 +463,22 @@ public class PeerWebSocket {
         }
     }
 
+    /**
+     * Map a send or receive failure to the IOException reported to callers
+     *
+     * @param   exc                 Failure
+     * @return                      I/O exception
+     */
+    static IOException asIOException(Throwable exc) {
+        if (exc instanceof IOException) {
+            return (IOException)exc;
+        }
+        if (exc instanceof TimeoutException) {
+            return new SocketTimeoutException("WebSocket read timeout exceeded");
+        }
+        return new SocketException(exc.getMessage() != null ? exc.getMessage() : exc.toString());
+    }
+
     /**
      * Process a socket message
      *
@@ -328,7 +488,6 @@ public class PeerWebSocket {
      */
     @OnWebSocketMessage
     public void onMessage(byte[] inbuf, int off, int len) {
-        lock.lock();
         try {
             ByteBuffer buf = ByteBuffer.wrap(inbuf, off, len);
             version = Math.min(buf.getInt(), VERSION);
@@ -351,19 +510,17 @@ public class PeerWebSocket {
                     }
                 }
             }
-            String message = new String(msgBytes, "UTF-8");
+            Payload message = new Payload(msgBytes, (flags&FLAG_BINARY) != 0);
             if (peerServlet != null) {
                 threadPool.execute(() -> peerServlet.doPost(this, requestId, message));
             } else {
-                PostRequest postRequest = requestMap.remove(requestId);
+                CompletableFuture<Payload> postRequest = requestMap.remove(requestId);
                 if (postRequest != null) {
                     postRequest.complete(message);
                 }
             }
         } catch (Exception exc) {
             Logger.logDebugMessage("Exception while processing WebSocket message", exc);
-        } finally {
-            lock.unlock();
         }
     }
 
@@ -386,8 +543,8 @@ public class PeerWebSocket {
                 session = null;
             }
             SocketException exc = new SocketException("WebSocket connection closed");
-            Set<Map.Entry<Long, PostRequest>> requests = requestMap.entrySet();
-            requests.forEach((entry) -> entry.getValue().complete(exc));
+            Set<Map.Entry<Long, CompletableFuture<Payload>>> requests = requestMap.entrySet();
+            requests.forEach((entry) -> entry.getValue().completeExceptionally(exc));
             requestMap.clear();
         } finally {
             lock.unlock();
@@ -411,68 +568,117 @@ public class PeerWebSocket {
     }
 
     /**
-     * POST request
+     * Growable message buffer, reused for outgoing messages
      */
-    private class PostRequest {
+    private static final class FrameBuffer extends ByteArrayOutputStream {
 
-        /** Request latch */
-        private final CountDownLatch latch = new CountDownLatch(1);
+        /** Number of idle buffers kept */
+        private static final int POOL_SIZE = 32;
 
-        /** Response message */
-        private volatile String response;
+        /** Largest buffer returned to the pool */
+        private static final int MAX_POOLED_SIZE = 1024 * 1024;
 
-        /** Socket exception */
-        private volatile IOException exception;
+        /** Idle buffers */
+        private static final ConcurrentLinkedQueue<FrameBuffer> pool = new ConcurrentLinkedQueue<>();
 
-        /**
-         * Create a post request
-         */
-        public PostRequest() {
+        /** Approximate number of idle buffers */
+        private static final AtomicInteger poolCount = new AtomicInteger();
+
+        /** Header placeholder */
+        private static final byte[] EMPTY_HEADER = new byte[HEADER_LENGTH];
+
+        private FrameBuffer() {
+            super(8192);
         }
 
         /**
-         * Wait for the response
-         *
-         * The caller must hold the lock for the request condition
+         * Get an empty buffer
          *
-         * @param   timeout                 Wait timeout
-         * @param   unit                    Time unit
-         * @return                          Response message
-         * @throws  InterruptedException    Wait interrupted
-         * @throws  IOException             I/O error occurred
+         * @return                  Buffer
          */
-        public String get(long timeout, TimeUnit unit) throws InterruptedException, IOException {
-            if (!latch.await(timeout, unit)) {
-                throw new SocketTimeoutException("WebSocket read timeout exceeded");
+        static FrameBuffer acquire() {
+            FrameBuffer frame = pool.poll();
+            if (frame == null) {
+                return new FrameBuffer();
             }
-            if (exception != null) {
-                throw exception;
+            poolCount.decrementAndGet();
+            return frame;
+        }
+
+        /**
+         * Return the buffer to the pool once its contents have been sent
+         */
+        void release() {
+            if (buf.length <= MAX_POOLED_SIZE && poolCount.incrementAndGet() <= POOL_SIZE) {
+                reset();
+                pool.offer(this);
+            } else if (buf.length <= MAX_POOLED_SIZE) {
+                poolCount.decrementAndGet();
             }
-            return response;
         }
 
         /**
-         * Complete the request with a response message
-         *
-         * The caller must hold the lock for the request condition
-         *
-         * @param   response                Response message
+         * Reserve space for the message header
          */
-        public void complete(String response) {
-            this.response = response;
-            latch.countDown();
+        void skipHeader() {
+            write(EMPTY_HEADER, 0, HEADER_LENGTH);
         }
 
         /**
-         * Complete the request with an exception
+         * Wrap the buffer contents without copying
          *
-         * The caller must hold the lock for the request condition
+         * @return                  Byte buffer positioned at the message header
+         */
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+
+    /**
+     * Message compressed for sending, shared by all connections it is sent on
+     */
+    static final class EncodedMessage {
+
+        /** Message bytes, compressed if FLAG_COMPRESSED is set */
+        private final byte[] bytes;
+
+        /** Message flags */
+        private final int flags;
+
+        /** Uncompressed message length */
+        final int length;
+
+        private EncodedMessage(byte[] bytes, int flags, int length) {
+            this.bytes = bytes;
+            this.flags = flags;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Message content together with its encoding
+     */
+    static final class Payload {
+
+        /** Message bytes, UTF-8 JSON text or binary encoded */
+        final byte[] bytes;
+
+        /** TRUE if the message is binary encoded */
+        final boolean binary;
+
+        Payload(byte[] bytes, boolean binary) {
+            this.bytes = bytes;
+            this.binary = binary;
+        }
+
+        /**
+         * Return the message as JSON text
          *
-         * @param   exception             I/O exception
+         * @return                  Message text
+         * @throws  IOException     The message is not valid
          */
-        public void complete(IOException exception) {
-            this.exception = exception;
-            latch.countDown();
+        String getString() throws IOException {
+            return binary ? BinaryJSON.decode(bytes).toJSONString() : new String(bytes, "UTF-8");
         }
     }
 }
@@ -60,10 +60,12 @@ import java.util.EnumSet;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
@@ -73,6 +75,7 @@ import java.util.concurrent.Future;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
 
 public final class Peers {
 
@@ -100,6 +103,9 @@ public final class Peers {
     static final int MAX_MESSAGE_SIZE = 10 * 1024 * 1024;
     public static final int MIN_COMPRESS_SIZE = 256;
     static final boolean useWebSockets;
+    static final boolean useBinaryProtocol = Nxt.getBooleanProperty("nxt.useWebSockets") && Nxt.getBooleanProperty("nxt.useBinaryPeerProtocol");
+    static final boolean useCompactBlocks = Nxt.getBooleanProperty("nxt.useCompactBlocks");
+    public static final boolean useTransactionSketches = Nxt.getBooleanProperty("nxt.useTransactionSketches");
     static final int webSocketIdleTimeout;
     static final boolean useProxy = System.getProperty("socksProxyHost") != null || System.getProperty("http.proxyHost") != null;
     static final boolean isGzipEnabled;
@@ -274,6 +280,15 @@ public final class Peers {
         if (Nxt.getBooleanProperty("nxt.enableComputationBlockchainRedirector") || Nxt.getBooleanProperty("nxt.enableComputationEngine")) {
             servicesList.add(Peer.Service.COMPUTATION_REDIRECTOR);
         }
+        if (useBinaryProtocol) {
+            servicesList.add(Peer.Service.BINARY);
+        }
+        if (useCompactBlocks) {
+            servicesList.add(Peer.Service.COMPACT_BLOCKS);
+        }
+        if (useTransactionSketches) {
+            servicesList.add(Peer.Service.TRANSACTION_SKETCHES);
+        }
 
         if (API.openAPIPort > 0 || API.openAPISSLPort > 0) {
             EnumSet<APIEnum> disabledAPISet = EnumSet.noneOf(APIEnum.class);
@@ -1006,13 +1021,39 @@ public final class Peers {
     public static void sendToSomePeers(Block block) {
         JSONObject request = block.getJSONObject();
         request.put("requestType", "processBlock");
-        sendToSomePeers(request);
+        JSONObject binaryRequest = null;
+        if (useBinaryProtocol) {
+            binaryRequest = block.getBinaryJSONObject();
+            binaryRequest.put("requestType", "processBlock");
+        }
+        sendToSomePeers(request, binaryRequest, compactSender(block, "processBlock", false));
     }
 
     public static void sendToSomePeersComputation(Block block) {
         JSONObject request = block.getJSONObject();
         request.put("requestType", "processBlockComputation");
-        sendToSomePeersComputation(request);
+        JSONObject binaryRequest = null;
+        if (useBinaryProtocol) {
+            binaryRequest = block.getBinaryJSONObjectComputational();
+            binaryRequest.put("requestType", "processBlockComputation");
+        }
+        sendToSomePeersComputation(request, binaryRequest, compactSender(block, "processBlockComputation", true));
+    }
+
+    private static Function<PeerImpl, CompletableFuture<JSONObject>> compactSender(Block block, String requestType, boolean computational) {
+        if (!useCompactBlocks) {
+            return null;
+        }
+        JSONObject request = CompactBlocks.getCompactJSONObject(block, computational);
+        request.put("requestType", requestType);
+        JSONObject binaryRequest = null;
+        if (useBinaryProtocol) {
+            binaryRequest = new JSONObject();
+            binaryRequest.putAll(request);
+            binaryRequest.put("protocol", 1);
+        }
+        BroadcastRequest compactRequest = new BroadcastRequest(JSON.prepareRequest(request), binaryRequest);
+        return peer -> CompactBlocks.sendAsync(peer, block, compactRequest, computational);
     }
 
     private static final int sendTransactionsBatchSize = 10;
@@ -1022,12 +1063,16 @@ public final class Peers {
         while (nextBatchStart < transactions.size()) {
             JSONObject request = new JSONObject();
             JSONArray transactionsData = new JSONArray();
+            JSONArray binaryTransactionsData = new JSONArray();
             for (int i = nextBatchStart; i < nextBatchStart + sendTransactionsBatchSize && i < transactions.size(); i++) {
                 transactionsData.add(transactions.get(i).getJSONObject());
+                if (useBinaryProtocol) {
+                    binaryTransactionsData.add(transactions.get(i).getBinaryJSONObject());
+                }
             }
             request.put("requestType", "processTransactions");
             request.put("transactions", transactionsData);
-            sendToSomePeers(request);
+            sendToSomePeers(request, binaryTransactionsRequest("processTransactions", binaryTransactionsData), null);
             nextBatchStart += sendTransactionsBatchSize;
         }
     }
@@ -1037,96 +1082,124 @@ public final class Peers {
         while (nextBatchStart < transactions.size()) {
             JSONObject request = new JSONObject();
             JSONArray transactionsData = new JSONArray();
+            JSONArray binaryTransactionsData = new JSONArray();
             for (int i = nextBatchStart; i < nextBatchStart + sendTransactionsBatchSize && i < transactions.size(); i++) {
                 transactionsData.add(transactions.get(i).getJSONObject());
+                if (useBinaryProtocol) {
+                    binaryTransactionsData.add(transactions.get(i).getBinaryJSONObjectComputational());
+                }
             }
             request.put("requestType", "processTransactionsComputation");
             request.put("transactions", transactionsData);
-            sendToSomePeersComputation(request);
+            sendToSomePeersComputation(request, binaryTransactionsRequest("processTransactionsComputation", binaryTransactionsData), null);
             nextBatchStart += sendTransactionsBatchSize;
         }
     }
 
-    private static void sendToSomePeers(final JSONObject request) {
-        sendingService.submit(() -> {
-            final JSONStreamAware jsonRequest = JSON.prepareRequest(request);
-
-            int successful = 0;
-            List<Future<JSONObject>> expectedResponses = new ArrayList<>();
-            for (final Peer peer : peers.values()) {
+    private static JSONObject binaryTransactionsRequest(String requestType, JSONArray binaryTransactionsData) {
+        if (!useBinaryProtocol) {
+            return null;
+        }
+        JSONObject binaryRequest = new JSONObject();
+        binaryRequest.put("requestType", requestType);
+        binaryRequest.put("transactions", binaryTransactionsData);
+        return binaryRequest;
+    }
 
-                if (Peers.enableHallmarkProtection && peer.getWeight() < Peers.pushThreshold) {
-                    continue;
-                }
+    private static void sendToSomePeers(final JSONObject request, final JSONObject binaryRequest,
+                                        final Function<PeerImpl, CompletableFuture<JSONObject>> compactSender) {
+        sendingService.submit(() -> broadcast(request, binaryRequest, compactSender, false));
+    }
 
-                if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED && peer.getAnnouncedAddress() != null
-                        && peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT) {
-                    Future<JSONObject> futureResponse = peersService.submit(() -> peer.send(jsonRequest));
-                    expectedResponses.add(futureResponse);
-                }
-                if (expectedResponses.size() >= Peers.sendToPeersLimit - successful) {
-                    for (Future<JSONObject> future : expectedResponses) {
-                        try {
-                            JSONObject response = future.get();
-                            if (response != null && response.get("error") == null) {
-                                successful += 1;
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        } catch (ExecutionException e) {
-                            Logger.logDebugMessage("Error in sendToSomePeers", e);
-                        }
+    private static void sendToSomePeersComputation(final JSONObject request, final JSONObject binaryRequest,
+                                                   final Function<PeerImpl, CompletableFuture<JSONObject>> compactSender) {
+        sendingService.submit(() -> broadcast(request, binaryRequest, compactSender, true));
+    }
 
-                    }
-                    expectedResponses.clear();
-                }
-                if (successful >= Peers.sendToPeersLimit) {
-                    return;
-                }
+    /**
+     * Send a request to up to sendToPeersLimit connected peers. The request is encoded once and written to all
+     * selected peers at the same time; each failed or rejected send is replaced by a send to the next peer, from the
+     * thread completing the response, so no thread waits for the acknowledgements.
+     *
+     * @param   request             Request
+     * @param   binaryRequest       Request for the binary encoding or null
+     * @param   compactSender       Sender for peers accepting compact blocks or null
+     * @param   computational       TRUE to only send to peers running the computation blockchain
+     */
+    private static void broadcast(final JSONObject request, final JSONObject binaryRequest,
+                                  final Function<PeerImpl, CompletableFuture<JSONObject>> compactSender, boolean computational) {
+        if (binaryRequest != null) {
+            binaryRequest.put("protocol", 1);
+        }
+        final BroadcastRequest broadcastRequest = new BroadcastRequest(JSON.prepareRequest(request), binaryRequest);
+        List<PeerImpl> candidates = new ArrayList<>();
+        for (PeerImpl peer : peers.values()) {
+            if (computational && !peer.providesService(Peer.Service.COMPUTATION_REDIRECTOR)) {
+                continue;
             }
-        });
+            if (Peers.enableHallmarkProtection && peer.getWeight() < Peers.pushThreshold) {
+                continue;
+            }
+            if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED && peer.getAnnouncedAddress() != null
+                    && peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT) {
+                candidates.add(peer);
+            }
+        }
+        new Broadcast(candidates, peer -> compactSender != null && peer.providesService(Peer.Service.COMPACT_BLOCKS)
+                ? compactSender.apply(peer)
+                : peer.sendAsync(broadcastRequest, Peers.MAX_RESPONSE_SIZE)).start();
     }
 
-    private static void sendToSomePeersComputation(final JSONObject request) {
-        sendingService.submit(() -> {
-            final JSONStreamAware jsonRequest = JSON.prepareRequest(request);
+    /**
+     * Fan-out state of one broadcast
+     */
+    private static final class Broadcast {
 
-            int successful = 0;
-            List<Future<JSONObject>> expectedResponses = new ArrayList<>();
-            for (final Peer peer : peers.values()) {
+        private final Iterator<PeerImpl> candidates;
+        private final Function<PeerImpl, CompletableFuture<JSONObject>> sender;
+        private int pending;
+        private int successful;
 
-                if(peer.providesService(Peer.Service.COMPUTATION_REDIRECTOR)==false) continue;
+        private Broadcast(List<PeerImpl> candidates, Function<PeerImpl, CompletableFuture<JSONObject>> sender) {
+            this.candidates = candidates.iterator();
+            this.sender = sender;
+        }
 
-                if (Peers.enableHallmarkProtection && peer.getWeight() < Peers.pushThreshold) {
-                    continue;
-                }
+        private void start() {
+            for (int i = 0; i < Peers.sendToPeersLimit; i++) {
+                sendNext();
+            }
+        }
 
-                if (!peer.isBlacklisted() && peer.getState() == Peer.State.CONNECTED && peer.getAnnouncedAddress() != null
-                        && peer.getBlockchainState() != Peer.BlockchainState.LIGHT_CLIENT) {
-                    Future<JSONObject> futureResponse = peersService.submit(() -> peer.send(jsonRequest));
-                    expectedResponses.add(futureResponse);
+        private void sendNext() {
+            PeerImpl peer;
+            synchronized (this) {
+                if (pending + successful >= Peers.sendToPeersLimit || !candidates.hasNext()) {
+                    return;
                 }
-                if (expectedResponses.size() >= Peers.sendToPeersLimit - successful) {
-                    for (Future<JSONObject> future : expectedResponses) {
-                        try {
-                            JSONObject response = future.get();
-                            if (response != null && response.get("error") == null) {
-                                successful += 1;
-                            }
-                        } catch (InterruptedException e) {
-                            Thread.currentThread().interrupt();
-                        } catch (ExecutionException e) {
-                            Logger.logDebugMessage("Error in sendToSomePeers", e);
-                        }
-
+                peer = candidates.next();
+                pending += 1;
+            }
+            CompletableFuture<JSONObject> futureResponse;
+            try {
+                futureResponse = sender.apply(peer);
+            } catch (RuntimeException e) {
+                Logger.logDebugMessage("Error in sendToSomePeers", e);
+                futureResponse = CompletableFuture.completedFuture(null);
+            }
+            futureResponse.whenComplete((response, exc) -> {
+                boolean accepted = exc == null && response != null && response.get("error") == null;
+                synchronized (this) {
+                    pending -= 1;
+                    if (accepted) {
+                        successful += 1;
                     }
-                    expectedResponses.clear();
                 }
-                if (successful >= Peers.sendToPeersLimit) {
-                    return;
+                if (!accepted) {
+                    sendNext();
                 }
-            }
-        });
+            });
+        }
     }
 
     public static Peer getAnyPeer(final Peer.State state, final boolean applyPullThreshold) {
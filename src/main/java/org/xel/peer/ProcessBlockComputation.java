@@ -37,6 +37,9 @@ final class ProcessBlockComputation extends PeerServlet.PeerRequestHandler {
         if (lastBlock.getStringId().equals(previousBlockId) ||
                 (Convert.parseUnsignedLong(previousBlockId) == lastBlock.getPreviousBlockId()
                         && lastBlock.getTimestamp() > Convert.parseLong(request.get("timestamp")))) {
+            if (request.get("shortIds") != null) {
+                return CompactBlocks.receive(request, peer, true);
+            }
             Peers.peersService.submit(() -> {
                 try {
                     Nxt.getTemporaryComputationBlockchainProcessor().processPeerBlock(request);
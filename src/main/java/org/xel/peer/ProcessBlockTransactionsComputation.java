@@ -0,0 +1,39 @@
+package org.xel.peer;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.json.simple.JSONObject;
+import org.json.simple.JSONStreamAware;
+
+final class ProcessBlockTransactionsComputation extends PeerServlet.PeerRequestHandler {
+
+    static final ProcessBlockTransactionsComputation instance = new ProcessBlockTransactionsComputation();
+
+    private ProcessBlockTransactionsComputation() {}
+
+    @Override
+    JSONStreamAware processRequest(JSONObject request, Peer peer) {
+        return CompactBlocks.receiveTransactions(request, peer, true);
+    }
+
+    @Override
+    boolean rejectWhileDownloading() {
+        return true;
+    }
+
+}
@@ -0,0 +1,212 @@
+package org.xel.util;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+
+/**
+ * Invertible Bloom lookup table over 64-bit identifiers. Two parties each build a sketch of their set with the same
+ * size and seed; subtracting one from the other leaves only the symmetric difference, which can be listed as long
+ * as the sketch has comfortably more cells than there are differences (about 1.5 cells per difference).
+ */
+public final class IdSketch {
+
+    private static final int HASH_COUNT = 3;
+    private static final int CELL_SIZE = 4 + 8 + 8;
+
+    private final int[] counts;
+    private final long[] idSums;
+    private final long[] hashSums;
+    private final long seed;
+
+    /**
+     * Create an empty sketch
+     *
+     * @param   cells           Number of cells, rounded up to a multiple of the hash count
+     * @param   seed            Hash seed, must match the seed of the other sketch
+     */
+    public IdSketch(int cells, long seed) {
+        if (cells <= 0) {
+            throw new IllegalArgumentException("Sketch size must be positive");
+        }
+        int size = (cells + HASH_COUNT - 1) / HASH_COUNT * HASH_COUNT;
+        this.counts = new int[size];
+        this.idSums = new long[size];
+        this.hashSums = new long[size];
+        this.seed = seed;
+    }
+
+    /**
+     * Parse a sketch created by {@link #getBytes()}
+     *
+     * @param   bytes           Sketch bytes
+     * @param   seed            Hash seed
+     * @return                  Sketch
+     * @throws  IllegalArgumentException    The bytes are not a valid sketch
+     */
+    public static IdSketch parse(byte[] bytes, long seed) {
+        if (bytes.length == 0 || bytes.length % (CELL_SIZE * HASH_COUNT) != 0) {
+            throw new IllegalArgumentException("Invalid sketch length " + bytes.length);
+        }
+        IdSketch sketch = new IdSketch(bytes.length / CELL_SIZE, seed);
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < sketch.counts.length; i++) {
+            sketch.counts[i] = buffer.getInt();
+            sketch.idSums[i] = buffer.getLong();
+            sketch.hashSums[i] = buffer.getLong();
+        }
+        return sketch;
+    }
+
+    /**
+     * Size of the bytes of a sketch
+     *
+     * @param   cells           Number of cells, rounded up like the constructor does
+     * @return                  Size in bytes
+     */
+    public static long getByteSize(int cells) {
+        return (long) (cells + HASH_COUNT - 1) / HASH_COUNT * HASH_COUNT * CELL_SIZE;
+    }
+
+    public int getCells() {
+        return counts.length;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public byte[] getBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(counts.length * CELL_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = 0; i < counts.length; i++) {
+            buffer.putInt(counts[i]);
+            buffer.putLong(idSums[i]);
+            buffer.putLong(hashSums[i]);
+        }
+        return buffer.array();
+    }
+
+    public void add(long id) {
+        update(id, 1);
+    }
+
+    /**
+     * Subtract another sketch of the same size and seed from this one
+     *
+     * @param   other           Sketch to subtract
+     */
+    public void subtract(IdSketch other) {
+        if (other.counts.length != counts.length || other.seed != seed) {
+            throw new IllegalArgumentException("Sketch size or seed does not match");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] -= other.counts[i];
+            idSums[i] ^= other.idSums[i];
+            hashSums[i] ^= other.hashSums[i];
+        }
+    }
+
+    /**
+     * List the identifiers left in a subtracted sketch. The sketch is emptied in the process.
+     *
+     * @param   added           Receives identifiers only present in this sketch
+     * @param   removed         Receives identifiers only present in the subtracted sketch
+     * @return                  TRUE if the whole difference was listed
+     */
+    public boolean decode(Collection<Long> added, Collection<Long> removed) {
+        Deque<Integer> pure = new ArrayDeque<>();
+        for (int i = 0; i < counts.length; i++) {
+            if (isPure(i)) {
+                pure.add(i);
+            }
+        }
+        while (!pure.isEmpty()) {
+            int i = pure.poll();
+            if (!isPure(i)) {
+                continue;
+            }
+            long id = idSums[i];
+            int count = counts[i];
+            if (count == 1) {
+                added.add(id);
+            } else {
+                removed.add(id);
+            }
+            update(id, -count);
+            int subtableSize = counts.length / HASH_COUNT;
+            for (int k = 0; k < HASH_COUNT; k++) {
+                int index = index(id, k, subtableSize);
+                if (isPure(index)) {
+                    pure.add(index);
+                }
+            }
+        }
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0 || idSums[i] != 0 || hashSums[i] != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estimate how many identifiers are left in a subtracted sketch that could not be fully decoded. Each identifier
+     * is counted in HASH_COUNT cells, so the estimate is exact when all of them are on the same side of the difference
+     * and a lower bound otherwise.
+     *
+     * @return                  Estimated number of identifiers
+     */
+    public int estimateRemaining() {
+        long total = 0;
+        for (int count : counts) {
+            total += Math.abs((long) count);
+        }
+        return (int) Math.min(Integer.MAX_VALUE, total / HASH_COUNT);
+    }
+
+    private boolean isPure(int i) {
+        return (counts[i] == 1 || counts[i] == -1) && hashSums[i] == hash(idSums[i], HASH_COUNT);
+    }
+
+    private void update(long id, int count) {
+        long checksum = hash(id, HASH_COUNT);
+        int subtableSize = counts.length / HASH_COUNT;
+        for (int k = 0; k < HASH_COUNT; k++) {
+            int index = index(id, k, subtableSize);
+            counts[index] += count;
+            idSums[index] ^= id;
+            hashSums[index] ^= checksum;
+        }
+    }
+
+    // each hash function has its own part of the table, so an id never lands twice in the same cell
+    private int index(long id, int k, int subtableSize) {
+        return k * subtableSize + (int)Long.remainderUnsigned(hash(id, k), subtableSize);
+    }
+
+    private long hash(long id, int k) {
+        long h = id ^ seed ^ (0x9E3779B97F4A7C15L * (k + 1));
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
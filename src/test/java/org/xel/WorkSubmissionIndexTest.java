@@ -0,0 +1,232 @@
+package org.xel;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class WorkSubmissionIndexTest {
+
+    private static final long WORK = 42;
+
+    // stands in for the latest pow_and_bounty rows of WORK: id -> {is_pow, was_paid}
+    private final Map<Long, boolean[]> rows = new HashMap<>();
+    // stands in for the latest bounty rows of WORK: id -> height, the storage of a bounty is its id
+    private final Map<Long, Integer> bountyHeights = new HashMap<>();
+    private int loads;
+
+    @Before
+    public void setUp() {
+        WorkSubmissionIndex.clear();
+        rows.clear();
+        bountyHeights.clear();
+        loads = 0;
+    }
+
+    @After
+    public void tearDown() {
+        WorkSubmissionIndex.transactionListener.commit();
+        WorkSubmissionIndex.clear();
+    }
+
+    @Test
+    public void applyKeepsCountersInStep() {
+        assertConsistent();
+        insert(1, true);
+        insert(2, false);
+        insert(3, false);
+        setPaid(1, true);
+        setPaid(2, false); // saved again without a change
+        WorkSubmissionIndex.transactionListener.commit();
+        assertConsistent();
+        Assert.assertEquals("counters were reloaded", 1, loads);
+    }
+
+    @Test
+    public void popReloadsFromDatabase() {
+        assertConsistent();
+        insert(1, true);
+        insert(2, false);
+        setPaid(1, true);
+        WorkSubmissionIndex.transactionListener.commit();
+
+        // popping the block drops the bounty and the payment, the table rollback clears the index
+        rows.remove(2L);
+        rows.get(1L)[1] = false;
+        WorkSubmissionIndex.clear();
+        assertConsistent();
+        Assert.assertEquals(2, loads);
+    }
+
+    @Test
+    public void rollbackDropsUncommittedRows() {
+        insert(1, true);
+        WorkSubmissionIndex.transactionListener.commit();
+        assertConsistent();
+        insert(2, true);
+        setPaid(1, true);
+
+        rows.remove(2L);
+        rows.get(1L)[1] = false;
+        WorkSubmissionIndex.transactionListener.rollback();
+        assertConsistent();
+        Assert.assertEquals(2, loads);
+    }
+
+    @Test
+    public void pendingWritesAreOnlySeenByTheirThread() throws InterruptedException {
+        assertConsistent();
+        insert(1, true);
+        Assert.assertNull(countersOnOtherThread());
+        assertConsistent();
+        WorkSubmissionIndex.transactionListener.commit();
+        WorkSubmissionIndex.Counters counters = countersOnOtherThread();
+        Assert.assertNotNull(counters);
+        Assert.assertEquals(1, counters.pows);
+        Assert.assertEquals(1, loads);
+    }
+
+    @Test
+    public void multiBountyBlockIsAnsweredByTheIndex() {
+        bountyHeights.put(7L, 10);
+        bountyHeights.put(-3L, 10);
+        bountyHeights.put(5L, 10);
+        bountyHeights.put(2L, 11);
+        long[] expected = {2, 7, 5, -3};
+        for (int fromLatest = 0; fromLatest < expected.length; ++fromLatest) {
+            int[] storage = WorkSubmissionIndex.getStorage(WORK, fromLatest, this::loadBounties);
+            Assert.assertNotNull("slot " + fromLatest + " fell through to the database", storage);
+            Assert.assertEquals(expected[fromLatest], storage[0]);
+        }
+        Assert.assertNull(WorkSubmissionIndex.getStorage(WORK, expected.length, this::loadBounties));
+        Assert.assertEquals(1, loads);
+    }
+
+    @Test
+    public void savedBountiesKeepTheQueryOrder() {
+        bountyHeights.put(7L, 10);
+        bountyHeights.put(3L, 10);
+        assertStorageConsistent();
+
+        // one block with bounties in no particular id order, an old bounty paid in it and one saved twice
+        saveBounty(9, 11);
+        saveBounty(-1, 11);
+        saveBounty(7, 11);
+        saveBounty(4, 11);
+        saveBounty(9, 11);
+        WorkSubmissionIndex.transactionListener.commit();
+        assertStorageConsistent();
+        Assert.assertEquals(1, loads);
+
+        WorkSubmissionIndex.clear();
+        assertStorageConsistent();
+        Assert.assertEquals(2, loads);
+    }
+
+    private void saveBounty(long id, int height) {
+        Boolean previouslyPaid = bountyHeights.containsKey(id) ? Boolean.FALSE : null;
+        bountyHeights.put(id, height);
+        WorkSubmissionIndex.onSave(WORK, false, false, previouslyPaid);
+        WorkSubmissionIndex.updateStorage(WORK, id, height, ByteBuffer.allocate(4).putInt((int) id).array());
+    }
+
+    // the rows as getBountiesForStorageIndex returns them
+    private List<WorkSubmissionIndex.Bounty> loadBounties(long workId) {
+        loads++;
+        List<WorkSubmissionIndex.Bounty> bounties = new ArrayList<>();
+        for (long id : sortedBountyIds()) {
+            bounties.add(new WorkSubmissionIndex.Bounty(id, bountyHeights.get(id), new int[] {(int) id}));
+        }
+        return bounties;
+    }
+
+    private List<Long> sortedBountyIds() {
+        List<Long> ids = new ArrayList<>(bountyHeights.keySet());
+        ids.sort(Comparator.comparing((Long id) -> bountyHeights.get(id)).thenComparing(Comparator.naturalOrder()));
+        return ids;
+    }
+
+    // every slot answered by the index, in the order of ORDER BY height DESC, id DESC
+    private void assertStorageConsistent() {
+        List<Long> ids = sortedBountyIds();
+        for (int fromLatest = 0; fromLatest < ids.size(); ++fromLatest) {
+            int[] storage = WorkSubmissionIndex.getStorage(WORK, fromLatest, this::loadBounties);
+            Assert.assertNotNull(storage);
+            Assert.assertEquals((long) ids.get(ids.size() - 1 - fromLatest), storage[0]);
+        }
+    }
+
+    private void insert(long id, boolean isPow) {
+        rows.put(id, new boolean[] {isPow, false});
+        WorkSubmissionIndex.onSave(WORK, isPow, false, null);
+    }
+
+    private void setPaid(long id, boolean paid) {
+        boolean[] row = rows.get(id);
+        boolean previouslyPaid = row[1];
+        row[1] = paid;
+        WorkSubmissionIndex.onSave(WORK, row[0], paid, previouslyPaid);
+    }
+
+    private WorkSubmissionIndex.Counters load(long workId) {
+        loads++;
+        return count();
+    }
+
+    private WorkSubmissionIndex.Counters count() {
+        WorkSubmissionIndex.Counters counters = new WorkSubmissionIndex.Counters();
+        for (boolean[] row : rows.values()) {
+            if (row[0]) {
+                counters.pows++;
+            } else {
+                counters.bounties++;
+            }
+            if (!row[1]) {
+                counters.unpaid++;
+            }
+        }
+        return counters;
+    }
+
+    private void assertConsistent() {
+        WorkSubmissionIndex.Counters expected = count();
+        WorkSubmissionIndex.Counters actual = WorkSubmissionIndex.getCounters(WORK, this::load);
+        Assert.assertNotNull(actual);
+        Assert.assertEquals(expected.pows, actual.pows);
+        Assert.assertEquals(expected.bounties, actual.bounties);
+        Assert.assertEquals(expected.unpaid, actual.unpaid);
+    }
+
+    private WorkSubmissionIndex.Counters countersOnOtherThread() throws InterruptedException {
+        AtomicReference<WorkSubmissionIndex.Counters> result = new AtomicReference<>();
+        Thread thread = new Thread(() -> result.set(WorkSubmissionIndex.getCounters(WORK, this::load)));
+        thread.start();
+        thread.join();
+        return result.get();
+    }
+}
@@ -0,0 +1,42 @@
+package org.xel.computation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Random;
+
+public class ScalerTest {
+
+    // the conversion as it was done before the constant part was precomputed
+    private static BigInteger reference(long powTarget) {
+        MathContext mc = new MathContext(32, RoundingMode.HALF_EVEN);
+        BigDecimal myTarget = new BigDecimal(ComputationConstants.MAXIMAL_WORK_TARGET);
+        myTarget = myTarget.divide(BigDecimal.valueOf(((double)Long.MAX_VALUE/10000.0)), mc);
+        myTarget = myTarget.multiply(BigDecimal.valueOf(powTarget));
+        BigInteger myTargetInt = myTarget.toBigInteger();
+        if(myTargetInt.compareTo(ComputationConstants.MAXIMAL_WORK_TARGET) == 1)
+            myTargetInt = ComputationConstants.MAXIMAL_WORK_TARGET;
+        if(myTargetInt.compareTo(BigInteger.ONE) == -1)
+            myTargetInt = BigInteger.ONE;
+        return myTargetInt;
+    }
+
+    @Test
+    public void matchesReferenceConversion() {
+        long[] fixed = {Long.MIN_VALUE, -1, 0, 1, 2, 1000, Long.MAX_VALUE / 10000 - 1, Long.MAX_VALUE / 10000, Long.MAX_VALUE};
+        for (long powTarget : fixed) {
+            Assert.assertEquals(reference(powTarget), Scaler.get(powTarget));
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            long powTarget = (random.nextLong() >>> 1) % (Long.MAX_VALUE / 10000) + 1;
+            Assert.assertEquals(reference(powTarget), Scaler.get(powTarget));
+            // second lookup is served from the cache
+            Assert.assertEquals(reference(powTarget), Scaler.get(powTarget));
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.xel.computation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SubmissionLimiterTest {
+
+    @Test
+    public void countsPerWorkAndKind() {
+        SubmissionLimiter limiter = new SubmissionLimiter();
+        limiter.record(1L, true, 10);
+        limiter.record(1L, true, 10);
+        limiter.record(1L, false, 10);
+        limiter.record(2L, true, 10);
+        Assert.assertEquals(2, limiter.count(1L, true, 10));
+        Assert.assertEquals(1, limiter.count(1L, false, 10));
+        Assert.assertTrue(limiter.isFull(1L, true, 2, 10));
+        Assert.assertFalse(limiter.isFull(2L, true, 2, 10));
+    }
+
+    @Test
+    public void newHeightStartsFromZero() {
+        SubmissionLimiter limiter = new SubmissionLimiter();
+        limiter.record(1L, true, 10);
+        Assert.assertEquals(0, limiter.count(1L, true, 11));
+        // a late caller at the old height does not wipe the new window
+        limiter.record(1L, true, 10);
+        limiter.record(1L, true, 11);
+        Assert.assertEquals(1, limiter.count(1L, true, 11));
+    }
+
+    @Test
+    public void resetAllowsLowerHeight() {
+        SubmissionLimiter limiter = new SubmissionLimiter();
+        limiter.record(1L, false, 10);
+        limiter.reset(9);
+        Assert.assertEquals(0, limiter.count(1L, false, 9));
+        limiter.record(1L, false, 9);
+        Assert.assertEquals(1, limiter.count(1L, false, 9));
+    }
+}
@@ -0,0 +1,41 @@
+package org.xel.computation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TimedCacheListTest {
+
+    @Test
+    public void remembersPairs() {
+        TimedCacheList cache = new TimedCacheList();
+        cache.put(43634634634634634L, -4242758255235L);
+        Assert.assertTrue(cache.has(43634634634634634L, -4242758255235L));
+        Assert.assertFalse(cache.has(43634634634634634L, 1L));
+        Assert.assertFalse(cache.has(-4242758255235L, 43634634634634634L));
+        Assert.assertEquals(1, cache.itemcnt());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void growsBeyondInitialTable() {
+        TimedCacheList cache = new TimedCacheList();
+        for (long i = 0; i < 5000; ++i) {
+            cache.put(i, -i);
+        }
+        for (long i = 0; i < 5000; ++i) {
+            Assert.assertTrue(cache.has(i, -i));
+        }
+        Assert.assertEquals(5000, cache.itemcnt());
+    }
+
+    @Test
+    public void staysBounded() {
+        TimedCacheList cache = new TimedCacheList(80);
+        for (long i = 0; i < 1000; ++i) {
+            cache.put(i, i);
+        }
+        Assert.assertTrue(cache.itemcnt() <= 80);
+        Assert.assertTrue(cache.getEvictions() >= 1000 - 80);
+    }
+}
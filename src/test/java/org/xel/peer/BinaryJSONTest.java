@@ -0,0 +1,75 @@
+package org.xel.peer;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.net.ProtocolException;
+import java.util.Arrays;
+
+public class BinaryJSONTest {
+
+    @Test
+    public void roundTrip() throws ProtocolException {
+        JSONObject transaction = new JSONObject();
+        transaction.put("transactionBytes", new byte[] {0, 1, 2, (byte) 0xff});
+        JSONArray transactions = new JSONArray();
+        transactions.add(transaction);
+        transactions.add(null);
+        JSONObject request = new JSONObject();
+        request.put("requestType", "processTransactions");
+        request.put("protocol", 1);
+        request.put("timestamp", -123456789012L);
+        request.put("max", Long.MAX_VALUE);
+        request.put("min", Long.MIN_VALUE);
+        request.put("ratio", 0.25);
+        request.put("flag", true);
+        request.put("text", "\u00e9l\u00e9ment");
+        request.put("transactions", transactions);
+
+        JSONObject decoded = BinaryJSON.decode(BinaryJSON.encode(request));
+        Assert.assertEquals(request.size(), decoded.size());
+        Assert.assertEquals("processTransactions", decoded.get("requestType"));
+        Assert.assertEquals(1L, decoded.get("protocol"));
+        Assert.assertEquals(-123456789012L, decoded.get("timestamp"));
+        Assert.assertEquals(Long.MAX_VALUE, decoded.get("max"));
+        Assert.assertEquals(Long.MIN_VALUE, decoded.get("min"));
+        Assert.assertEquals(0.25, decoded.get("ratio"));
+        Assert.assertEquals(Boolean.TRUE, decoded.get("flag"));
+        Assert.assertEquals("\u00e9l\u00e9ment", decoded.get("text"));
+        JSONArray decodedTransactions = (JSONArray) decoded.get("transactions");
+        Assert.assertEquals(2, decodedTransactions.size());
+        Assert.assertNull(decodedTransactions.get(1));
+        Assert.assertTrue(Arrays.equals(new byte[] {0, 1, 2, (byte) 0xff},
+                (byte[]) ((JSONObject) decodedTransactions.get(0)).get("transactionBytes")));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void truncatedMessage() throws ProtocolException {
+        JSONObject request = new JSONObject();
+        request.put("requestType", "getNextBlocks");
+        byte[] bytes = BinaryJSON.encode(request);
+        BinaryJSON.decode(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void oversizedLength() throws ProtocolException {
+        // an object claiming far more entries than the message holds
+        BinaryJSON.decode(new byte[] {8, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f});
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void negativeLength() throws ProtocolException {
+        // a string whose length varint has the sign bit set
+        BinaryJSON.decode(new byte[] {8, 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff,
+                (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x01});
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsupportedValue() {
+        JSONObject request = new JSONObject();
+        request.put("value", new Object());
+        BinaryJSON.encode(request);
+    }
+}
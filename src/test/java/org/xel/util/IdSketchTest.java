@@ -0,0 +1,100 @@
+package org.xel.util;
+
+/******************************************************************************
+ * Copyright © 2017 The XEL Core Developers.                                  *
+ *                                                                            *
+ * See the AUTHORS.txt, DEVELOPER-AGREEMENT.txt and LICENSE.txt files at      *
+ * the top-level directory of this distribution for the individual copyright  *
+ * holder information and the developer policies on copyright and licensing.  *
+ *                                                                            *
+ * Unless otherwise agreed in a custom licensing agreement, no part of the    *
+ * XEL software, including this file, may be copied, modified, propagated,    *
+ * or distributed except according to the terms contained in the LICENSE.txt  *
+ * file.                                                                      *
+ *                                                                            *
+ * Removal or modification of this copyright notice is prohibited.            *
+ *                                                                            *
+ ******************************************************************************/
+
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+public class IdSketchTest {
+
+    @Test
+    public void reconcile() {
+        Random random = new Random(1);
+        IdSketch local = new IdSketch(60, 42);
+        IdSketch remote = new IdSketch(60, 42);
+        Set<Long> onlyLocal = new HashSet<>();
+        Set<Long> onlyRemote = new HashSet<>();
+        for (int i = 0; i < 5000; i++) {
+            long id = random.nextLong();
+            local.add(id);
+            remote.add(id);
+        }
+        for (int i = 0; i < 15; i++) {
+            long id = random.nextLong();
+            local.add(id);
+            onlyLocal.add(id);
+        }
+        for (int i = 0; i < 10; i++) {
+            long id = random.nextLong();
+            remote.add(id);
+            onlyRemote.add(id);
+        }
+        IdSketch received = IdSketch.parse(remote.getBytes(), 42);
+        local.subtract(received);
+        Set<Long> added = new HashSet<>();
+        Set<Long> removed = new HashSet<>();
+        Assert.assertTrue(local.decode(added, removed));
+        Assert.assertEquals(onlyLocal, added);
+        Assert.assertEquals(onlyRemote, removed);
+    }
+
+    @Test
+    public void tooManyDifferences() {
+        Random random = new Random(2);
+        IdSketch local = new IdSketch(30, 7);
+        for (int i = 0; i < 500; i++) {
+            local.add(random.nextLong());
+        }
+        local.subtract(new IdSketch(30, 7));
+        Assert.assertFalse(local.decode(new HashSet<>(), new HashSet<>()));
+    }
+
+    @Test
+    public void estimateAfterFailedDecode() {
+        Random random = new Random(3);
+        IdSketch local = new IdSketch(60, 9);
+        for (int i = 0; i < 500; i++) {
+            local.add(random.nextLong());
+        }
+        local.subtract(new IdSketch(60, 9));
+        Set<Long> added = new HashSet<>();
+        Assert.assertFalse(local.decode(added, new HashSet<>()));
+        // every difference is on one side, so the estimate is exact
+        Assert.assertEquals(500, added.size() + local.estimateRemaining());
+    }
+
+    @Test
+    public void byteSize() {
+        Assert.assertEquals(new IdSketch(50, 1).getBytes().length, IdSketch.getByteSize(50));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void seedMismatch() {
+        new IdSketch(30, 1).subtract(new IdSketch(30, 2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidLength() {
+        IdSketch.parse(new byte[21], 1);
+    }
+
+}